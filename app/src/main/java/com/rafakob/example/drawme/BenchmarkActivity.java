@@ -0,0 +1,166 @@
+package com.rafakob.example.drawme;
+
+import android.os.Bundle;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.rafakob.drawme.DrawMeButton;
+import com.rafakob.drawme.DrawMeTextView;
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.util.Coloring;
+import com.rafakob.drawme.util.DrawMeMetrics;
+
+import java.util.Locale;
+
+/**
+ * Stress scenario: thousands of rows of DrawMe widgets scrolled by scripted flings.
+ * Frame times, bind cost and DrawMe metrics are logged under the "DrawMeBenchmark" tag once flings finish.
+ * Started from the "Benchmark" menu item of {@link MainActivity}:
+ * <pre>
+ * adb logcat -s DrawMeBenchmark DrawMe
+ * </pre>
+ * Bind cost without a display is measured by BenchmarkBindTest in the unit tests.
+ */
+public class BenchmarkActivity extends AppCompatActivity {
+    private static final String TAG = "DrawMeBenchmark";
+    private static final int ROW_COUNT = 5000;
+    private static final int FLING_COUNT = 10;
+    private static final int FLING_VELOCITY = 12000;
+    private static final long FLING_INTERVAL = 1500;
+
+    private final FrameRecorder frameRecorder = new FrameRecorder();
+    private RecyclerView recyclerView;
+    private BenchmarkAdapter adapter;
+    private int flings;
+
+    private final Runnable flingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (flings == FLING_COUNT) {
+                finishBenchmark();
+                return;
+            }
+            // alternate directions, so the list keeps scrolling through bound and recycled rows
+            recyclerView.fling(0, flings % 2 == 0 ? FLING_VELOCITY : -FLING_VELOCITY / 2);
+            flings++;
+            recyclerView.postDelayed(this, FLING_INTERVAL);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        DrawMeMetrics.setEnabled(true);
+        DrawMeMetrics.reset();
+        setContentView(R.layout.activity_benchmark);
+
+        adapter = new BenchmarkAdapter(new int[]{
+                ContextCompat.getColor(this, R.color.colorAccent),
+                ContextCompat.getColor(this, R.color.colorPrimary),
+                ContextCompat.getColor(this, R.color.colorGreen),
+                ContextCompat.getColor(this, R.color.colorBlue)});
+        recyclerView = (RecyclerView) findViewById(R.id.benchmark_list);
+        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        recyclerView.setAdapter(adapter);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        flings = 0;
+        frameRecorder.start(this);
+        recyclerView.postDelayed(flingRunnable, FLING_INTERVAL);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        recyclerView.removeCallbacks(flingRunnable);
+        frameRecorder.stop();
+    }
+
+    private void finishBenchmark() {
+        frameRecorder.stop();
+        Log.i(TAG, frameRecorder.report());
+        Log.i(TAG, adapter.report());
+        DrawMeMetrics.dump();
+    }
+
+    static class BenchmarkAdapter extends RecyclerView.Adapter<BenchmarkAdapter.Holder> {
+        private final int[] colors;
+        private ShapeSpec[] actionSpecs;
+        private long bindNanos;
+        private int binds;
+        private long createNanos;
+        private int creates;
+
+        BenchmarkAdapter(int[] colors) {
+            this.colors = colors;
+        }
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            long start = System.nanoTime();
+            Holder holder = new Holder(LayoutInflater.from(parent.getContext()).inflate(R.layout.item_benchmark, parent, false));
+            if (actionSpecs == null) {
+                actionSpecs = createActionSpecs(holder.action.getSpec());
+            }
+            createNanos += System.nanoTime() - start;
+            creates++;
+            return holder;
+        }
+
+        /**
+         * Variants of the inflated button spec differing only in colors, so binding recolors backgrounds in place.
+         */
+        private ShapeSpec[] createActionSpecs(ShapeSpec spec) {
+            ShapeSpec[] specs = new ShapeSpec[colors.length];
+            for (int i = 0; i < colors.length; i++) {
+                specs[i] = spec.buildUpon()
+                        .backColor(colors[i])
+                        .backColorPressed(Coloring.mix(spec.getMaskColorPressed(), colors[i]))
+                        .backColorDisabled(Coloring.mix(spec.getMaskColorDisabled(), colors[i]))
+                        .build();
+            }
+            return specs;
+        }
+
+        @Override
+        public void onBindViewHolder(Holder holder, int position) {
+            long start = System.nanoTime();
+            holder.title.setText("Row " + position);
+            holder.action.rebind(actionSpecs[position % actionSpecs.length]);
+            holder.action.setEnabled(position % 7 != 0);
+            bindNanos += System.nanoTime() - start;
+            binds++;
+        }
+
+        @Override
+        public int getItemCount() {
+            return ROW_COUNT;
+        }
+
+        String report() {
+            return String.format(Locale.US, "creates: %d, avg %.1fus; binds: %d, avg %.1fus",
+                    creates, creates == 0 ? 0 : createNanos / 1e3 / creates,
+                    binds, binds == 0 ? 0 : bindNanos / 1e3 / binds);
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+            final DrawMeTextView title;
+            final DrawMeButton action;
+
+            Holder(View itemView) {
+                super(itemView);
+                title = (DrawMeTextView) itemView.findViewById(R.id.benchmark_title);
+                action = (DrawMeButton) itemView.findViewById(R.id.benchmark_action);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.rafakob.example.drawme;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Records duration of every frame: total frame time from FrameMetrics on API 24+,
+ * interval between Choreographer frames on API 16+. Nothing is recorded on older devices.
+ */
+class FrameRecorder {
+    private static final int MAX_FRAMES = 10000;
+    private static final long JANK_NANOS = 16666667;
+
+    private final long[] durations = new long[MAX_FRAMES];
+    private int count;
+
+    private Activity activity;
+    private HandlerThread metricsThread;
+    private Object metricsListener;
+    private Object frameCallback;
+
+    void start(Activity activity) {
+        synchronized (this) {
+            // every resume records a new run
+            count = 0;
+        }
+        this.activity = activity;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            startFrameMetrics();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            startChoreographer();
+        }
+    }
+
+    void stop() {
+        if (activity == null) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            stopFrameMetrics();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            stopChoreographer();
+        }
+        activity = null;
+    }
+
+    private synchronized void record(long nanos) {
+        if (count < MAX_FRAMES) {
+            durations[count++] = nanos;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private void startFrameMetrics() {
+        metricsThread = new HandlerThread("FrameRecorder");
+        metricsThread.start();
+        Window.OnFrameMetricsAvailableListener listener = new Window.OnFrameMetricsAvailableListener() {
+            @Override
+            public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCount) {
+                record(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+            }
+        };
+        metricsListener = listener;
+        activity.getWindow().addOnFrameMetricsAvailableListener(listener, new Handler(metricsThread.getLooper()));
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private void stopFrameMetrics() {
+        activity.getWindow().removeOnFrameMetricsAvailableListener((Window.OnFrameMetricsAvailableListener) metricsListener);
+        metricsThread.quit();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void startChoreographer() {
+        Choreographer.FrameCallback callback = new Choreographer.FrameCallback() {
+            private long lastFrame;
+
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                if (lastFrame != 0) {
+                    record(frameTimeNanos - lastFrame);
+                }
+                lastFrame = frameTimeNanos;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        };
+        frameCallback = callback;
+        Choreographer.getInstance().postFrameCallback(callback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void stopChoreographer() {
+        Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+    }
+
+    synchronized String report() {
+        if (count == 0) {
+            return "frames: not recorded";
+        }
+        long[] sorted = Arrays.copyOf(durations, count);
+        Arrays.sort(sorted);
+        int janky = 0;
+        for (long d : sorted) {
+            if (d > JANK_NANOS) {
+                janky++;
+            }
+        }
+        return String.format(Locale.US, "frames: %d, janky: %d (%.1f%%), p50: %.2fms, p90: %.2fms, p99: %.2fms, max: %.2fms",
+                count, janky, janky * 100f / count,
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), sorted[count - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6;
+    }
+}
@@ -1,9 +1,13 @@
 package com.rafakob.example.drawme;
 
+import android.content.Intent;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
 
 public class MainActivity extends AppCompatActivity {
+    private static final int MENU_BENCHMARK = 1;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -32,4 +36,19 @@ public class MainActivity extends AppCompatActivity {
         findViewById(R.id.ada3).setPressed(true);
         findViewById(R.id.ada4).setPressed(true);
     }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, MENU_BENCHMARK, Menu.NONE, "Benchmark");
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == MENU_BENCHMARK) {
+            startActivity(new Intent(this, BenchmarkActivity.class));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
 }
@@ -0,0 +1,58 @@
+package com.rafakob.example.drawme;
+
+import android.os.Build;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.rafakob.drawme.util.DrawMeMetrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * JVM variant of {@link BenchmarkActivity}: creates a screenful of holders and binds every row of the benchmark
+ * list to them, laying each row out again like RecyclerView does. No display, flings or frame timing,
+ * only create and bind cost of the adapter and DrawMe metrics are printed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.N_MR1)
+public class BenchmarkBindTest {
+    private static final int HOLDERS = 12;
+
+    @Test
+    public void bindAllRows() {
+        // created only, onResume() would start flings and frame recording
+        BenchmarkActivity activity = Robolectric.buildActivity(BenchmarkActivity.class).create().get();
+        RecyclerView list = (RecyclerView) activity.findViewById(R.id.benchmark_list);
+        BenchmarkActivity.BenchmarkAdapter adapter = (BenchmarkActivity.BenchmarkAdapter) list.getAdapter();
+        int width = activity.getResources().getDisplayMetrics().widthPixels;
+
+        BenchmarkActivity.BenchmarkAdapter.Holder[] holders = new BenchmarkActivity.BenchmarkAdapter.Holder[HOLDERS];
+        for (int i = 0; i < HOLDERS; i++) {
+            holders[i] = adapter.onCreateViewHolder(list, 0);
+        }
+        for (int position = 0; position < adapter.getItemCount(); position++) {
+            BenchmarkActivity.BenchmarkAdapter.Holder holder = holders[position % HOLDERS];
+            adapter.onBindViewHolder(holder, position);
+            layout(holder.itemView, width);
+        }
+
+        for (BenchmarkActivity.BenchmarkAdapter.Holder holder : holders) {
+            assertNotNull(holder.action.getBackground());
+        }
+        System.out.println(adapter.report());
+        System.out.println(DrawMeMetrics.snapshot());
+    }
+
+    private static void layout(View view, int width) {
+        int height = view.getLayoutParams().height;
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, width, height);
+    }
+}
@@ -0,0 +1,80 @@
+package com.rafakob.drawme.benchmark;
+
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.util.BackgroundCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups keyed by shape specs, as done by the background cache for every view which gets a background.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+    private static final int SPECS = 64;
+
+    private final ShapeSpec[] specs = new ShapeSpec[SPECS];
+    private final LruCache<Object, Object> lruCache = new LruCache<>(BackgroundCache.DEFAULT_MAX_SIZE);
+    private final HashMap<Object, Object> hashMap = new HashMap<>();
+    private ShapeSpec missing;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < SPECS; i++) {
+            specs[i] = new ShapeSpec.Builder()
+                    .backColor(0xFF000000 | (i * 0x030507))
+                    .radius(i % 8)
+                    .statePressed(true)
+                    .build();
+            lruCache.put(specs[i], specs[i]);
+            hashMap.put(specs[i], specs[i]);
+        }
+        missing = specs[0].buildUpon().stroke(1).build();
+    }
+
+    private ShapeSpec next() {
+        index = (index + 1) & (SPECS - 1);
+        return specs[index];
+    }
+
+    @Benchmark
+    public Object lruCacheHit() {
+        return lruCache.get(next());
+    }
+
+    @Benchmark
+    public Object lruCacheMiss() {
+        return lruCache.get(missing);
+    }
+
+    @Benchmark
+    public Object hashMapHit() {
+        return hashMap.get(next());
+    }
+
+    /* Lookup of a shape which isn't cached yet, as done before every background build */
+    @Benchmark
+    public Drawable backgroundCacheMiss() {
+        return BackgroundCache.get(missing, null);
+    }
+}
@@ -0,0 +1,70 @@
+package com.rafakob.drawme.benchmark;
+
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.util.Coloring;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Color math used when building state colors of a shape and when precomputing palettes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColoringBenchmark {
+    /* Size of a typical theme palette */
+    private static final int PALETTE_SIZE = 256;
+
+    private int[] palette;
+    private int[] mixed;
+    private float[] brightness;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        palette = new int[PALETTE_SIZE];
+        mixed = new int[PALETTE_SIZE];
+        brightness = new float[PALETTE_SIZE];
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            palette[i] = (i << 24) | (i * 0x010305);
+        }
+    }
+
+    @Benchmark
+    public int mix() {
+        index = (index + 1) & (PALETTE_SIZE - 1);
+        return Coloring.mix(ShapeSpec.DEFAULT_MASK_COLOR_PRESSED, palette[index]);
+    }
+
+    @Benchmark
+    public int[] mixAllPalette() {
+        Coloring.mixAll(ShapeSpec.DEFAULT_MASK_COLOR_DISABLED, palette, mixed);
+        return mixed;
+    }
+
+    @Benchmark
+    public float colorBrightness() {
+        index = (index + 1) & (PALETTE_SIZE - 1);
+        return Coloring.getColorBrightness(palette[index]);
+    }
+
+    @Benchmark
+    public float[] colorBrightnessPalette() {
+        Coloring.getColorBrightness(palette, brightness);
+        return brightness;
+    }
+}
@@ -0,0 +1,45 @@
+package com.rafakob.drawme.benchmark;
+
+import android.os.Build;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.regex.Pattern;
+
+/**
+ * Runs JMH suites of the "framework" package, which call framework methods and need Robolectric.
+ * JMH can't fork a JVM with a Robolectric sandbox, so these suites run in-process (forks = 0) inside
+ * the sandbox of this test - JIT profile and heap are shared between benchmarks, compare numbers
+ * of the same benchmark only. Started by the jmh task, -PjmhArgs apply here too.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.N_MR1)
+public class FrameworkBenchmarks {
+
+    @Test
+    public void run() throws Exception {
+        String args = System.getProperty("drawme.jmhArgs", "").trim();
+        File results = new File("build/reports/jmh/framework.json");
+        results.getParentFile().mkdirs();
+        String framework = FrameworkBenchmarks.class.getPackage().getName() + ".framework.";
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args.isEmpty() ? new String[0] : args.split(" ")))
+                // plain JVM suites are forked by the jmh task itself
+                .exclude("^(?!" + Pattern.quote(framework) + ")")
+                .forks(0)
+                .shouldFailOnError(true)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results.getPath())
+                .build()).run();
+    }
+}
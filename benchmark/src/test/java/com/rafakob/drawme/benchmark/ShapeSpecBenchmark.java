@@ -0,0 +1,71 @@
+package com.rafakob.drawme.benchmark;
+
+import com.rafakob.drawme.delegate.ShapeSpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and comparing interned shape specs, done for every inflated view and every rebind.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeSpecBenchmark {
+    private ShapeSpec spec;
+    private ShapeSpec recolored;
+    private ShapeSpec resized;
+
+    @Setup
+    public void setUp() {
+        spec = build(0xFF3F51B5);
+        recolored = spec.buildUpon().backColor(0xFFFF4081).build();
+        resized = spec.buildUpon().radius(4).build();
+    }
+
+    private static ShapeSpec build(int backColor) {
+        return new ShapeSpec.Builder()
+                .backColor(backColor)
+                .backColorPressed(0xFF303F9F)
+                .stroke(2)
+                .strokeColor(0xFF000000)
+                .radius(8)
+                .statePressed(true)
+                .build();
+    }
+
+    /* Spec equal to an existing one, intern() returns the pooled instance */
+    @Benchmark
+    public ShapeSpec buildInterned() {
+        return build(0xFF3F51B5);
+    }
+
+    /* Rebind to different colors */
+    @Benchmark
+    public ShapeSpec buildUponRecolor() {
+        return spec.buildUpon().backColor(0xFFFF4081).build();
+    }
+
+    @Benchmark
+    public boolean equalsDifferent() {
+        return spec.equals(resized);
+    }
+
+    @Benchmark
+    public boolean hasSameGeometry() {
+        return spec.hasSameGeometry(recolored);
+    }
+}
@@ -0,0 +1,64 @@
+package com.rafakob.drawme.benchmark.framework;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.rafakob.drawme.R;
+import com.rafakob.drawme.delegate.DrawMeShape;
+import com.rafakob.drawme.delegate.ShapeSpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving DrawMe attributes of an inflated widget, done once for every view.
+ * Runs inside the Robolectric sandbox of {@link com.rafakob.drawme.benchmark.FrameworkBenchmarks}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AttributeResolutionBenchmark {
+    private Context context;
+    private AttributeSet inlineAttrs;
+    private DrawMeShape drawMe;
+
+    @Setup
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        inlineAttrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.dm_backColor, "#3F51B5")
+                .addAttribute(R.attr.dm_stroke, "2px")
+                .addAttribute(R.attr.dm_strokeColor, "#FF4081")
+                .addAttribute(R.attr.dm_radius, "8px")
+                .build();
+        drawMe = new DrawMeShape(context, new View(context), inlineAttrs);
+    }
+
+    /* Attributes declared in a layout, full TypedArray pass with theme derived default colors */
+    @Benchmark
+    public ShapeSpec inlineAttributes() {
+        drawMe.obtainAttributes(context, inlineAttrs, 0);
+        return drawMe.getSpec();
+    }
+
+    /* Attributes coming only from styles and theme, served by the attribute cache after the first widget */
+    @Benchmark
+    public ShapeSpec styleOnly() {
+        drawMe.obtainAttributes(context, null, 0);
+        return drawMe.getSpec();
+    }
+}
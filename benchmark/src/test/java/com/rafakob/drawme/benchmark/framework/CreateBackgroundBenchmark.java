@@ -0,0 +1,72 @@
+package com.rafakob.drawme.benchmark.framework;
+
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+
+import com.rafakob.drawme.delegate.DrawMeShape;
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.util.BackgroundCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a background drawable, paid by every widget whose shape isn't in the background cache yet,
+ * compared with the cached copy the other widgets get.
+ * Runs inside the Robolectric sandbox of {@link com.rafakob.drawme.benchmark.FrameworkBenchmarks}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CreateBackgroundBenchmark {
+    /* RippleDrawable on Lollipop and newer, or a state list shape */
+    @Param({"true", "false"})
+    public boolean ripple;
+
+    @Param({"false", "true"})
+    public boolean shadow;
+
+    private ShapeSpec spec;
+    private Resources resources;
+
+    @Setup
+    public void setUp() {
+        spec = new ShapeSpec.Builder()
+                .rippleEffect(ripple)
+                .backColor(0xFF3F51B5)
+                .backColorPressed(0xFF303F9F)
+                .stroke(2)
+                .strokeColor(0xFFFF4081)
+                .radius(8)
+                .shadowX(shadow ? 4 : 0)
+                .shadowY(shadow ? 4 : 0)
+                .shadowColor(0x66000000)
+                .build();
+        resources = RuntimeEnvironment.application.getResources();
+        BackgroundCache.put(spec, DrawMeShape.createBackground(spec));
+    }
+
+    @Benchmark
+    public Drawable createBackground() {
+        return DrawMeShape.createBackground(spec);
+    }
+
+    /* Copy of a cached background, what every other widget with the same shape gets */
+    @Benchmark
+    public Drawable backgroundCacheHit() {
+        return BackgroundCache.get(spec, resources);
+    }
+}
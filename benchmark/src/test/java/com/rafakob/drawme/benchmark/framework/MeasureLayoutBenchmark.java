@@ -0,0 +1,89 @@
+package com.rafakob.drawme.benchmark.framework;
+
+import android.content.Context;
+import android.view.View;
+
+import com.rafakob.drawme.delegate.DrawMeShape;
+import com.rafakob.drawme.delegate.ShapeSpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure and layout callbacks of the delegate, which run for every widget on every layout pass.
+ * Runs inside the Robolectric sandbox of {@link com.rafakob.drawme.benchmark.FrameworkBenchmarks}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MeasureLayoutBenchmark {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 48;
+
+    private final int widthSpec = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+    private final int heightSpec = View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY);
+    private DrawMeShape plain;
+    private DrawMeShape square;
+    private View pillView;
+    private DrawMeShape pill;
+    private boolean tall;
+
+    @Setup
+    public void setUp() {
+        ShapeSpec spec = new ShapeSpec.Builder()
+                .backColor(0xFF3F51B5)
+                .radius(8)
+                .build();
+        Context context = RuntimeEnvironment.application;
+        plain = laidOut(new View(context), spec);
+        square = laidOut(new View(context), spec.buildUpon().shapeEqualWidthHeight(true).build());
+        pillView = new View(context);
+        pill = laidOut(pillView, spec.buildUpon().shapeRadiusHalfHeight(true).build());
+    }
+
+    private static DrawMeShape laidOut(View view, ShapeSpec spec) {
+        DrawMeShape drawMe = new DrawMeShape(view.getContext(), view);
+        drawMe.setSpec(spec);
+        view.layout(0, 0, WIDTH, HEIGHT);
+        drawMe.onLayout(true, 0, 0, WIDTH, HEIGHT);
+        return drawMe;
+    }
+
+    @Benchmark
+    public int[] onMeasure() {
+        return plain.onMeasure(widthSpec, heightSpec);
+    }
+
+    /* Square shape, measure specs are replaced by the larger side */
+    @Benchmark
+    public int[] onMeasureEqualWidthHeight() {
+        return square.onMeasure(widthSpec, heightSpec);
+    }
+
+    /* View has been moved, spec hasn't changed and the rebuild is skipped */
+    @Benchmark
+    public void onLayoutUnchanged() {
+        plain.onLayout(true, 0, 0, WIDTH, HEIGHT);
+    }
+
+    /* Half height radius with alternating heights, every layout gets a background from the background cache */
+    @Benchmark
+    public void onLayoutHalfHeightResize() {
+        tall = !tall;
+        int height = tall ? HEIGHT * 2 : HEIGHT;
+        pillView.layout(0, 0, WIDTH, height);
+        pill.onLayout(true, 0, 0, WIDTH, height);
+    }
+}
@@ -1,15 +1,21 @@
 package com.rafakob.drawme;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.support.v7.widget.AppCompatButton;
 import android.util.AttributeSet;
 
-import com.rafakob.drawme.delegate.DrawMe;
+import com.rafakob.drawme.delegate.DrawMeShape;
 import com.rafakob.drawme.delegate.DrawMeShapeText;
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.delegate.TextSpec;
 
 public class DrawMeButton extends AppCompatButton {
 
-    private final DrawMe drawMe;
+    private final DrawMeShapeText drawMe;
 
     public DrawMeButton(Context context) {
         this(context, null);
@@ -35,4 +41,62 @@ public class DrawMeButton extends AppCompatButton {
         super.onLayout(changed, left, top, right, bottom);
         drawMe.onLayout(changed, left, top, right, bottom);
     }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        drawMe.onAttachedToWindow();
+    }
+
+    @Override
+    public void setTypeface(Typeface tf) {
+        super.setTypeface(tf);
+        // called by the TextView constructor too, before the delegate exists
+        if (drawMe != null) {
+            drawMe.onTypefaceSet();
+        }
+    }
+
+    @Override
+    public void setCompoundDrawables(Drawable left, Drawable top, Drawable right, Drawable bottom) {
+        super.setCompoundDrawables(left, top, right, bottom);
+        if (drawMe != null) {
+            drawMe.onCompoundDrawablesSet();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    @Override
+    public void setCompoundDrawablesRelative(Drawable start, Drawable top, Drawable end, Drawable bottom) {
+        super.setCompoundDrawablesRelative(start, top, end, bottom);
+        if (drawMe != null) {
+            drawMe.onCompoundDrawablesSet();
+        }
+    }
+
+    public DrawMeShape.Editor edit() {
+        return drawMe.edit();
+    }
+
+    public ShapeSpec getSpec() {
+        return drawMe.getSpec();
+    }
+
+    /**
+     * @see DrawMeShape#rebind(ShapeSpec)
+     */
+    public void rebind(ShapeSpec spec) {
+        drawMe.rebind(spec);
+    }
+
+    public TextSpec getTextSpec() {
+        return drawMe.getTextSpec();
+    }
+
+    /**
+     * @see DrawMeShapeText#rebind(ShapeSpec, TextSpec)
+     */
+    public void rebind(ShapeSpec spec, TextSpec textSpec) {
+        drawMe.rebind(spec, textSpec);
+    }
 }
\ No newline at end of file
@@ -4,8 +4,8 @@ import android.content.Context;
 import android.util.AttributeSet;
 import android.widget.LinearLayout;
 
-import com.rafakob.drawme.delegate.DrawMe;
 import com.rafakob.drawme.delegate.DrawMeShape;
+import com.rafakob.drawme.delegate.ShapeSpec;
 
 public class DrawMeLinearLayout extends LinearLayout {
     private final DrawMeShape drawMe;
@@ -32,6 +32,27 @@ public class DrawMeLinearLayout extends LinearLayout {
         drawMe.onLayout(changed, left, top, right, bottom);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        drawMe.onAttachedToWindow();
+    }
+
+    public DrawMeShape.Editor edit() {
+        return drawMe.edit();
+    }
+
+    public ShapeSpec getSpec() {
+        return drawMe.getSpec();
+    }
+
+    /**
+     * @see DrawMeShape#rebind(ShapeSpec)
+     */
+    public void rebind(ShapeSpec spec) {
+        drawMe.rebind(spec);
+    }
+
     public int getBackColor()
     {
         return this.drawMe.getBackColor();
@@ -251,4 +272,14 @@ public class DrawMeLinearLayout extends LinearLayout {
     {
         this.drawMe.setShapeRadiusHalfHeight(shapeRadiusHalfHeight);
     }
+
+    public boolean isRasterize()
+    {
+        return this.drawMe.isRasterize();
+    }
+
+    public void setRasterize(boolean rasterize)
+    {
+        this.drawMe.setRasterize(rasterize);
+    }
 }
@@ -4,11 +4,11 @@ import android.content.Context;
 import android.util.AttributeSet;
 import android.widget.RelativeLayout;
 
-import com.rafakob.drawme.delegate.DrawMe;
 import com.rafakob.drawme.delegate.DrawMeShape;
+import com.rafakob.drawme.delegate.ShapeSpec;
 
 public class DrawMeRelativeLayout extends RelativeLayout {
-    private final DrawMe drawMe;
+    private final DrawMeShape drawMe;
 
     public DrawMeRelativeLayout(Context context) {
         super(context);
@@ -31,4 +31,25 @@ public class DrawMeRelativeLayout extends RelativeLayout {
         super.onLayout(changed, left, top, right, bottom);
         drawMe.onLayout(changed, left, top, right, bottom);
     }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        drawMe.onAttachedToWindow();
+    }
+
+    public DrawMeShape.Editor edit() {
+        return drawMe.edit();
+    }
+
+    public ShapeSpec getSpec() {
+        return drawMe.getSpec();
+    }
+
+    /**
+     * @see DrawMeShape#rebind(ShapeSpec)
+     */
+    public void rebind(ShapeSpec spec) {
+        drawMe.rebind(spec);
+    }
 }
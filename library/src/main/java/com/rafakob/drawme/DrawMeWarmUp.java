@@ -0,0 +1,140 @@
+package com.rafakob.drawme;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.StyleRes;
+
+import com.rafakob.drawme.delegate.DrawMeShape;
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.delegate.ThemeColorTable;
+import com.rafakob.drawme.util.BackgroundCache;
+import com.rafakob.drawme.util.DrawMeTrace;
+import com.rafakob.drawme.util.FontCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Startup warm-up, so the first inflation of a screen doesn't pay for font loads, theme color resolution
+ * and building of common backgrounds. Blocks until done, call it from a background thread:
+ * <pre>
+ * final Context context = new ContextThemeWrapper(getApplicationContext(), R.style.AppTheme);
+ * DrawMeExecutor.submit(new Runnable() {
+ *     public void run() {
+ *         DrawMeWarmUp.warmUp(context, new DrawMeWarmUp.Config.Builder()
+ *                 .fonts("Lato-Bold.ttf")
+ *                 .styles(R.style.RoundedButton)
+ *                 .build());
+ *     }
+ * });
+ * </pre>
+ */
+public class DrawMeWarmUp {
+
+    /**
+     * @param context Context with the theme used by the screens, theme colors are resolved for this theme.
+     * @return Time spent in each step.
+     */
+    public static Result warmUp(Context context, Config config) {
+        boolean trace = DrawMeTrace.begin("warmUp");
+        long start = SystemClock.uptimeMillis();
+        for (String font : config.fonts) {
+            FontCache.get(context, font);
+        }
+
+        long fontsDone = SystemClock.uptimeMillis();
+        ThemeColorTable.get(context);
+
+        long themeDone = SystemClock.uptimeMillis();
+        List<ShapeSpec> specs = new ArrayList<>(config.specs);
+        for (int style : config.styles) {
+            specs.add(DrawMeShape.resolveStyle(context, style));
+        }
+        int built = 0;
+        for (ShapeSpec spec : specs) {
+            // half height radius depends on size of a view, such shapes are built on layout
+            if (!spec.isShapeRadiusHalfHeight() && !spec.drawsNothing() && !BackgroundCache.contains(spec)) {
+                BackgroundCache.put(spec, DrawMeShape.createBackground(spec));
+                built++;
+            }
+        }
+
+        long shapesDone = SystemClock.uptimeMillis();
+        DrawMeTrace.end(trace);
+        return new Result(fontsDone - start, themeDone - fontsDone, shapesDone - themeDone, built);
+    }
+
+    public static final class Config {
+        private final List<String> fonts;
+        private final List<Integer> styles;
+        private final List<ShapeSpec> specs;
+
+        private Config(Builder b) {
+            fonts = Collections.unmodifiableList(new ArrayList<>(b.fonts));
+            styles = Collections.unmodifiableList(new ArrayList<>(b.styles));
+            specs = Collections.unmodifiableList(new ArrayList<>(b.specs));
+        }
+
+        public static class Builder {
+            private final List<String> fonts = new ArrayList<>();
+            private final List<Integer> styles = new ArrayList<>();
+            private final List<ShapeSpec> specs = new ArrayList<>();
+
+            /**
+             * @param fonts File names of fonts in "assets/fonts/".
+             */
+            public Builder fonts(String... fonts) {
+                Collections.addAll(this.fonts, fonts);
+                return this;
+            }
+
+            /**
+             * @param styles Styles declaring DrawMe attributes, their backgrounds are built ahead of time.
+             */
+            public Builder styles(@StyleRes int... styles) {
+                for (int style : styles) {
+                    this.styles.add(style);
+                }
+                return this;
+            }
+
+            /**
+             * @param specs Shape specs whose backgrounds are built ahead of time.
+             */
+            public Builder specs(ShapeSpec... specs) {
+                Collections.addAll(this.specs, specs);
+                return this;
+            }
+
+            public Config build() {
+                return new Config(this);
+            }
+        }
+    }
+
+    public static final class Result {
+        public final long fontsMillis;
+        public final long themeMillis;
+        public final long shapesMillis;
+        /* Backgrounds built, specs which were already cached are skipped */
+        public final int builtBackgrounds;
+
+        private Result(long fontsMillis, long themeMillis, long shapesMillis, int builtBackgrounds) {
+            this.fontsMillis = fontsMillis;
+            this.themeMillis = themeMillis;
+            this.shapesMillis = shapesMillis;
+            this.builtBackgrounds = builtBackgrounds;
+        }
+
+        public long getTotalMillis() {
+            return fontsMillis + themeMillis + shapesMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "DrawMeWarmUp: fonts " + fontsMillis + "ms, theme " + themeMillis + "ms, shapes " + shapesMillis
+                    + "ms (" + builtBackgrounds + " built), total " + getTotalMillis() + "ms";
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.rafakob.drawme.delegate;
+
+import android.content.res.Resources;
+import android.util.AttributeSet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of attributes resolved from styles only, keyed by (theme, style resource, defStyleAttr).
+ * Widgets which don't declare any DrawMe attribute inline share the result of a single TypedArray pass,
+ * including default colors derived from the theme. Widgets with inline attributes always use the full path.
+ *
+ * @param <T> Type of resolved attributes.
+ */
+public final class AttributeCache<T> {
+    static final AttributeCache<ShapeSpec> SHAPES = new AttributeCache<>();
+    static final AttributeCache<DrawMeShapeText.TextStyle> TEXTS = new AttributeCache<>();
+
+    private final WeakHashMap<Resources.Theme, HashMap<Long, T>> cache = new WeakHashMap<>();
+
+    private AttributeCache() {
+    }
+
+    synchronized T get(Resources.Theme theme, int styleRes, int defStyleAttr) {
+        HashMap<Long, T> styles = cache.get(theme);
+        return styles == null ? null : styles.get(key(styleRes, defStyleAttr));
+    }
+
+    synchronized void put(Resources.Theme theme, int styleRes, int defStyleAttr, T value) {
+        HashMap<Long, T> styles = cache.get(theme);
+        if (styles == null) {
+            styles = new HashMap<>();
+            cache.put(theme, styles);
+        }
+        styles.put(key(styleRes, defStyleAttr), value);
+    }
+
+    private synchronized void evictAll() {
+        cache.clear();
+    }
+
+    private static long key(int styleRes, int defStyleAttr) {
+        return ((long) styleRes << 32) | (defStyleAttr & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Drops all resolved attributes, eg. after theme has been modified in place.
+     */
+    public static void clear() {
+        SHAPES.evictAll();
+        TEXTS.evictAll();
+    }
+
+    /**
+     * @param styleable Sorted styleable array, see {@link #sorted(int[])}.
+     * @return True if any of the styleable attributes is declared directly in a layout.
+     */
+    static boolean hasInlineAttributes(AttributeSet attrs, int[] styleable) {
+        if (attrs == null) {
+            return false;
+        }
+        for (int i = 0, count = attrs.getAttributeCount(); i < count; i++) {
+            if (Arrays.binarySearch(styleable, attrs.getAttributeNameResource(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int getStyle(AttributeSet attrs) {
+        return attrs == null ? 0 : attrs.getStyleAttribute();
+    }
+
+    static int[] sorted(int[] styleable) {
+        int[] copy = styleable.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
@@ -5,5 +5,9 @@ public interface DrawMe {
 
     void onLayout(boolean changed, int left, int top, int right, int bottom);
 
+    /**
+     * Returns measure specs which should be passed to super.onMeasure().
+     * Returned array is reused by subsequent calls, read it right away and don't keep it.
+     */
     int[] onMeasure(int widthMeasureSpec, int heightMeasureSpec);
 }
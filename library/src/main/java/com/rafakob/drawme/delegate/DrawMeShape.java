@@ -6,60 +6,64 @@ import android.content.res.ColorStateList;
 import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.GradientDrawable;
-import android.graphics.drawable.LayerDrawable;
 import android.graphics.drawable.RippleDrawable;
-import android.graphics.drawable.StateListDrawable;
 import android.os.Build;
 import android.support.annotation.AttrRes;
-import android.support.annotation.ColorInt;
+import android.support.annotation.StyleRes;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.View;
 
 import com.rafakob.drawme.R;
-import com.rafakob.drawme.util.Coloring;
+import com.rafakob.drawme.drawable.DrawMeDrawable;
+import com.rafakob.drawme.drawable.RasterShapeDrawable;
+import com.rafakob.drawme.util.BackgroundCache;
+import com.rafakob.drawme.util.DrawMeDebug;
+import com.rafakob.drawme.util.DrawMeExecutor;
+import com.rafakob.drawme.util.DrawMeMetrics;
+import com.rafakob.drawme.util.DrawMeTrace;
 
-import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * Base delegate that holds all shape attributes and accessors.
  */
 public class DrawMeShape implements DrawMe {
+    /* Rebuild counters shared by all delegates */
+    private static final AtomicLong performedRebuilds = new AtomicLong();
+    private static final AtomicLong skippedRebuilds = new AtomicLong();
+    private static final int[] SHAPE_ATTRS = AttributeCache.sorted(R.styleable.DrawMe);
     /* Widget */
     protected final View mView;
-    /* Background color */
-    protected int backColor;
-    protected int backColorPressed;
-    protected int backColorDisabled;
-    /* Stroke */
-    protected int stroke;
-    protected int strokeColor;
-    protected int strokeColorPressed;
-    protected int strokeColorDisabled;
-    /* Corner radius */
-    protected int radius;
-    protected int radiusBottomLeft;
-    protected int radiusBottomRight;
-    protected int radiusTopLeft;
-    protected int radiusTopRight;
-    /* Mask */
-    protected float maskBrightnessThreshold;
-    protected int maskColorPressed;
-    protected int maskColorPressedInverse;
-    protected int maskColorDisabled;
-    /* Params */
-    protected boolean rippleEffect;
-    protected boolean rippleUseControlHighlight;
-    protected boolean statePressed;
-    protected boolean stateDisabled;
-    protected boolean shapeEqualWidthHeight;
-    protected boolean shapeRadiusHalfHeight;
-    /* 2D Shadow */
-    protected int shadowX;
-    protected int shadowY;
-    protected int shadowColor;
+    /* Attributes */
+    protected ShapeSpec spec;
+    /* Reused by every onMeasure() call */
+    private final int[] measureSpecs = new int[2];
+    /* Currently installed background */
+    private ShapeSpec backgroundSpec;
+    private Drawable background;
+    /* Elevation set for SHADOW_MODE_ELEVATION, the elevation the view had before is restored once it's not needed */
+    private boolean ownsElevation;
+    private float originalElevation;
+    private float appliedElevation;
+    /* Async background */
+    private static volatile boolean defaultAsyncBackground;
+    private boolean asyncBackground = defaultAsyncBackground;
+    private BackgroundTask backgroundTask;
+    /* Batched updates */
+    private boolean updatePending;
+    private final Runnable updateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (updatePending) {
+                updateLayout(DrawMeMetrics.CAUSE_BATCH);
+            }
+        }
+    };
+    /* Reported to DrawMeMetrics by the next updateLayout(), setters by default */
+    private int updateCause = DrawMeMetrics.CAUSE_SETTER;
 
     public DrawMeShape(Context context, View view) {
         this(context, view, null);
@@ -72,495 +76,939 @@ public class DrawMeShape implements DrawMe {
     public DrawMeShape(Context context, View view, AttributeSet attrs, @AttrRes int defStyleAttr) {
         this.mView = view;
         obtainAttributes(context, attrs, defStyleAttr);
+        if (!DrawMeExecutor.isMainThread()) {
+            // inflated ahead of time (eg. by AsyncLayoutInflater), do the heavy part here instead of in the first layout
+            prepareBackground();
+        }
     }
 
     public void obtainAttributes(Context context, AttributeSet attrs, @AttrRes int defStyleAttr) {
+        // attributes coming only from styles and theme are the same for every widget, resolve them once
+        boolean styleOnly = !AttributeCache.hasInlineAttributes(attrs, SHAPE_ATTRS);
+        int style = AttributeCache.getStyle(attrs);
+        if (styleOnly) {
+            ShapeSpec cached = AttributeCache.SHAPES.get(context.getTheme(), style, defStyleAttr);
+            if (cached != null) {
+                spec = cached;
+                DrawMeMetrics.onAttributesResolved(false, true);
+                return;
+            }
+        }
+        DrawMeMetrics.onAttributesResolved(false, false);
+
+        boolean trace = DrawMeTrace.begin("obtainAttributes", mView);
         TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.DrawMe, defStyleAttr, 0);
         obtainShapeAttributes(typedArray);
         typedArray.recycle();
+        DrawMeTrace.end(trace);
+
+        if (styleOnly) {
+            AttributeCache.SHAPES.put(context.getTheme(), style, defStyleAttr, spec);
+        }
     }
 
     protected void obtainShapeAttributes(TypedArray a) {
-        rippleEffect = a.getBoolean(R.styleable.DrawMe_dm_rippleEffect, true);
-        rippleUseControlHighlight = a.getBoolean(R.styleable.DrawMe_dm_rippleUseControlHighlight, true);
-        statePressed = a.getBoolean(R.styleable.DrawMe_dm_statePressed, true);
-        stateDisabled = a.getBoolean(R.styleable.DrawMe_dm_stateDisabled, true);
-        shapeEqualWidthHeight = a.getBoolean(R.styleable.DrawMe_dm_shapeEqualWidthHeight, false);
-        shapeRadiusHalfHeight = a.getBoolean(R.styleable.DrawMe_dm_shapeRadiusHalfHeight, false);
-
-        maskBrightnessThreshold = a.getFloat(R.styleable.DrawMe_dm_maskBrightnessThreshold, 0);
-        maskColorPressed = a.getColor(R.styleable.DrawMe_dm_maskColorPressed, Color.parseColor("#1F000000"));
-        maskColorPressedInverse = a.getColor(R.styleable.DrawMe_dm_maskColorPressedInverse, Color.parseColor("#1DFFFFFF"));
-        maskColorDisabled = a.getColor(R.styleable.DrawMe_dm_maskColorDisabled, Color.parseColor("#6DFFFFFF"));
-
-        stroke = a.getDimensionPixelSize(R.styleable.DrawMe_dm_stroke, 0);
-        radius = a.getDimensionPixelSize(R.styleable.DrawMe_dm_radius, 0);
-        radiusBottomLeft = a.getDimensionPixelSize(R.styleable.DrawMe_dm_radiusBottomLeft, -1);
-        radiusBottomRight = a.getDimensionPixelSize(R.styleable.DrawMe_dm_radiusBottomRight, -1);
-        radiusTopLeft = a.getDimensionPixelSize(R.styleable.DrawMe_dm_radiusTopLeft, -1);
-        radiusTopRight = a.getDimensionPixelSize(R.styleable.DrawMe_dm_radiusTopRight, -1);
-
-        backColor = a.getColor(R.styleable.DrawMe_dm_backColor, Color.TRANSPARENT);
-        backColorPressed = a.getColor(R.styleable.DrawMe_dm_backColorPressed, defaultPressedColor(backColor));
-        backColorDisabled = a.getColor(R.styleable.DrawMe_dm_backColorDisabled, defaultDisabledColor(backColor));
-
-        strokeColor = a.getColor(R.styleable.DrawMe_dm_strokeColor, Color.GRAY);
-        strokeColorPressed = a.getColor(R.styleable.DrawMe_dm_strokeColorPressed, defaultPressedColor(strokeColor));
-        strokeColorDisabled = a.getColor(R.styleable.DrawMe_dm_strokeColorDisabled, defaultDisabledColor(strokeColor));
-
-        shadowColor = a.getColor(R.styleable.DrawMe_dm_shadowColor, Color.GRAY);
-        shadowX = a.getDimensionPixelSize(R.styleable.DrawMe_dm_shadowX, 0);
-        shadowY = a.getDimensionPixelSize(R.styleable.DrawMe_dm_shadowY, 0);
+        spec = readShapeSpec(mView.getContext(), a);
+    }
 
+    /**
+     * Resolves shape attributes declared in a style, over the theme of a given context.
+     * Default style of a widget (defStyleAttr) isn't taken into account.
+     *
+     * @param style Style resource, eg. R.style.RoundedButton.
+     * @return Spec of a widget styled only with this style.
+     */
+    public static ShapeSpec resolveStyle(Context context, @StyleRes int style) {
+        TypedArray typedArray = context.obtainStyledAttributes(style, R.styleable.DrawMe);
+        ShapeSpec spec = readShapeSpec(context, typedArray);
+        typedArray.recycle();
+        return spec;
+    }
+
+    private static ShapeSpec readShapeSpec(Context context, TypedArray a) {
+        boolean rippleUseControlHighlight = a.getBoolean(R.styleable.DrawMe_dm_rippleUseControlHighlight, true);
+        float maskBrightnessThreshold = a.getFloat(R.styleable.DrawMe_dm_maskBrightnessThreshold, 0);
+        int maskColorPressed = a.getColor(R.styleable.DrawMe_dm_maskColorPressed, ShapeSpec.DEFAULT_MASK_COLOR_PRESSED);
+        int maskColorPressedInverse = a.getColor(R.styleable.DrawMe_dm_maskColorPressedInverse, ShapeSpec.DEFAULT_MASK_COLOR_PRESSED_INVERSE);
+        int maskColorDisabled = a.getColor(R.styleable.DrawMe_dm_maskColorDisabled, ShapeSpec.DEFAULT_MASK_COLOR_DISABLED);
+
+        ThemeColorTable colors = ThemeColorTable.get(context);
+        int backColor = a.getColor(R.styleable.DrawMe_dm_backColor, Color.TRANSPARENT);
+        int strokeColor = a.getColor(R.styleable.DrawMe_dm_strokeColor, Color.GRAY);
+
+        return new ShapeSpec.Builder()
+                .rippleEffect(a.getBoolean(R.styleable.DrawMe_dm_rippleEffect, true))
+                .rippleUseControlHighlight(rippleUseControlHighlight)
+                .statePressed(a.getBoolean(R.styleable.DrawMe_dm_statePressed, true))
+                .stateDisabled(a.getBoolean(R.styleable.DrawMe_dm_stateDisabled, true))
+                .shapeEqualWidthHeight(a.getBoolean(R.styleable.DrawMe_dm_shapeEqualWidthHeight, false))
+                .shapeRadiusHalfHeight(a.getBoolean(R.styleable.DrawMe_dm_shapeRadiusHalfHeight, false))
+                .rasterize(a.getBoolean(R.styleable.DrawMe_dm_rasterize, false))
+
+                .maskBrightnessThreshold(maskBrightnessThreshold)
+                .maskColorPressed(maskColorPressed)
+                .maskColorPressedInverse(maskColorPressedInverse)
+                .maskColorDisabled(maskColorDisabled)
+
+                .stroke(a.getDimensionPixelSize(R.styleable.DrawMe_dm_stroke, 0))
+                .radius(a.getDimensionPixelSize(R.styleable.DrawMe_dm_radius, 0))
+                .radiusBottomLeft(a.getDimensionPixelSize(R.styleable.DrawMe_dm_radiusBottomLeft, -1))
+                .radiusBottomRight(a.getDimensionPixelSize(R.styleable.DrawMe_dm_radiusBottomRight, -1))
+                .radiusTopLeft(a.getDimensionPixelSize(R.styleable.DrawMe_dm_radiusTopLeft, -1))
+                .radiusTopRight(a.getDimensionPixelSize(R.styleable.DrawMe_dm_radiusTopRight, -1))
+
+                .backColor(backColor)
+                .backColorPressed(a.getColor(R.styleable.DrawMe_dm_backColorPressed,
+                        colors.pressedColor(backColor, maskBrightnessThreshold, maskColorPressed, maskColorPressedInverse, rippleUseControlHighlight)))
+                .backColorDisabled(a.getColor(R.styleable.DrawMe_dm_backColorDisabled, colors.disabledColor(backColor, maskColorDisabled)))
+
+                .strokeColor(strokeColor)
+                .strokeColorPressed(a.getColor(R.styleable.DrawMe_dm_strokeColorPressed,
+                        colors.pressedColor(strokeColor, maskBrightnessThreshold, maskColorPressed, maskColorPressedInverse, rippleUseControlHighlight)))
+                .strokeColorDisabled(a.getColor(R.styleable.DrawMe_dm_strokeColorDisabled, colors.disabledColor(strokeColor, maskColorDisabled)))
+
+                .shadowColor(a.getColor(R.styleable.DrawMe_dm_shadowColor, Color.GRAY))
+                .shadowX(a.getDimensionPixelSize(R.styleable.DrawMe_dm_shadowX, 0))
+                .shadowY(a.getDimensionPixelSize(R.styleable.DrawMe_dm_shadowY, 0))
+                .shadowMode(a.getInt(R.styleable.DrawMe_dm_shadowMode, ShapeSpec.SHADOW_MODE_PATH))
+                .build();
     }
 
     @Override
     public void onLayout(boolean changed, int left, int top, int right, int bottom) {
-        if (shapeRadiusHalfHeight) {
-            radius = mView.getHeight() / 2;
+        if (spec.isShapeRadiusHalfHeight() && spec.getRadius() != mView.getHeight() / 2) {
+            spec = spec.buildUpon().radius(mView.getHeight() / 2).build();
         }
         if (changed)
         {
-            updateLayout();
+            updateLayout(DrawMeMetrics.CAUSE_LAYOUT);
         }
     }
 
+    /**
+     * Applies changes of the view which were deferred because it has been constructed off the main thread.
+     */
+    public void onAttachedToWindow() {
+    }
+
     @Override
     public int[] onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        int[] size = new int[2];
-        if (shapeEqualWidthHeight && mView.getWidth() > 0 && mView.getHeight() > 0) {
+        if (spec.isShapeEqualWidthHeight() && mView.getWidth() > 0 && mView.getHeight() > 0) {
+            boolean trace = DrawMeTrace.begin("onMeasure", mView);
             int max = Math.max(mView.getWidth(), mView.getHeight());
             int measureSpec = View.MeasureSpec.makeMeasureSpec(max, View.MeasureSpec.EXACTLY);
-            size[0] = measureSpec;
-            size[1] = measureSpec;
-            return size;
+            measureSpecs[0] = measureSpec;
+            measureSpecs[1] = measureSpec;
+            DrawMeTrace.end(trace);
+            return measureSpecs;
         }
-        size[0] = widthMeasureSpec;
-        size[1] = heightMeasureSpec;
-        return size;
+        measureSpecs[0] = widthMeasureSpec;
+        measureSpecs[1] = heightMeasureSpec;
+        return measureSpecs;
     }
 
-    @Override
-    public void updateLayout() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-            mView.setBackground(createBackground());
-        } else {
-            mView.setBackgroundDrawable(createBackground());
+    /**
+     * Schedules background rebuild on the next animation frame. Multiple requests made before that
+     * frame (or a rebuild triggered by onLayout in the meantime) end up in a single rebuild.
+     */
+    public void requestUpdateLayout() {
+        if (!updatePending) {
+            updatePending = true;
+            ViewCompat.postOnAnimation(mView, updateRunnable);
         }
     }
 
-    private Drawable createBackground() {
-//        Log.v(this.getClass().getSimpleName() , "create background");
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && rippleEffect) {
-            return createRippleDrawable();
-        } else {
-            return createStateListDrawable();
-        }
+    /**
+     * Starts a batch of property changes which rebuilds background only once.
+     * <pre>
+     * drawMe.edit().backColor(color).stroke(2).radius(8).apply();
+     * </pre>
+     *
+     * @return Editor of this delegate.
+     */
+    public Editor edit() {
+        return new Editor();
     }
 
     /**
-     * Creates background shape - setups background, stroke and radius.
+     * Binds a new spec, eg. when a recycled view gets a new item. If only colors have changed,
+     * the current background is recolored in place instead of being rebuilt and set again.
      *
-     * @param backgroundColor Background color.
-     * @param strokeColor     Stroke color.
-     * @return Shape drawable.
+     * @param spec New shape spec.
      */
-    private Drawable createShape(int backgroundColor, int strokeColor) {
-        GradientDrawable shape = new GradientDrawable();
-        shape.setColor(backgroundColor);
+    public void rebind(ShapeSpec spec) {
+        if (spec.isShapeRadiusHalfHeight() && mView.getHeight() > 0) {
+            spec = spec.buildUpon().radius(mView.getHeight() / 2).build();
+        }
+        if (spec == this.spec) {
+            return;
+        }
+        this.spec = spec;
+        if (backgroundTask == null && background != null && mView.getBackground() == background
+                && backgroundSpec.hasSameGeometry(spec) && recolorBackground(background, backgroundSpec, spec)) {
+            backgroundSpec = spec;
+            DrawMeMetrics.onRecolor();
+            return;
+        }
+        updateLayout(DrawMeMetrics.CAUSE_REBIND);
+    }
 
-        final float[] radiusArray = new float[8];
-        Arrays.fill(radiusArray, radius);
+    private void updateLayout(int cause) {
+        updateCause = cause;
+        updateLayout();
+    }
 
-        if (radiusTopLeft >= 0) {
-            radiusArray[0] = radiusTopLeft;
-            radiusArray[1] = radiusTopLeft;
+    @Override
+    public void updateLayout() {
+        int cause = updateCause;
+        updateCause = DrawMeMetrics.CAUSE_SETTER;
+        updatePending = false;
+        if (backgroundTask != null && backgroundTask.spec != spec) {
+            // spec has changed while the previous one was being built
+            backgroundTask.cancel();
+            backgroundTask = null;
+        }
+        if (spec == backgroundSpec && mView.getBackground() == background) {
+            // nothing visual has changed (eg. view has been only moved), keep current drawable
+            skippedRebuilds.incrementAndGet();
+            DrawMeMetrics.onRebuild(cause, true);
+            return;
         }
+        if (backgroundTask != null) {
+            // the same background is already being built
+            return;
+        }
+        performedRebuilds.incrementAndGet();
+        DrawMeMetrics.onRebuild(cause, false);
+        boolean trace = DrawMeTrace.begin("updateLayout", mView);
+        rebuildBackground();
+        DrawMeTrace.end(trace);
+    }
 
-        if (radiusTopRight >= 0) {
-            radiusArray[2] = radiusTopRight;
-            radiusArray[3] = radiusTopRight;
+    private void rebuildBackground() {
+        if (DrawMeDebug.isEnabled()) {
+            DrawMeDebug.setOptimization(mView, getOptimization(spec));
         }
 
-        if (radiusBottomRight >= 0) {
-            radiusArray[4] = radiusBottomRight;
-            radiusArray[5] = radiusBottomRight;
+        if (spec.drawsNothing()) {
+            // eg. transparent layout, don't install a drawable which never draws
+            installBackground(spec, null);
+            return;
         }
 
-        if (radiusBottomLeft >= 0) {
-            radiusArray[6] = radiusBottomLeft;
-            radiusArray[7] = radiusBottomLeft;
+        Drawable cached = BackgroundCache.get(spec, mView.getResources());
+        if (cached != null) {
+            DrawMeMetrics.onDrawableAllocated(mView.getContext());
+            installBackground(spec, cached);
+        } else if (asyncBackground && isRippleBackground(spec)) {
+            if (mView.getBackground() == null) {
+                // cheap placeholder without ripple, swapped once the real one is ready
+                setBackgroundCompat(createStateListDrawable(spec));
+                DrawMeMetrics.onDrawableAllocated(mView.getContext());
+            }
+            backgroundTask = new BackgroundTask(spec);
+            backgroundTask.start();
+        } else {
+            Drawable created = createBackground(spec);
+            DrawMeMetrics.onDrawableAllocated(mView.getContext());
+            BackgroundCache.put(spec, created);
+            installBackground(spec, created);
         }
-        shape.setCornerRadii(radiusArray);
-        shape.setStroke(stroke, strokeColor);
-        return shape;
     }
 
-    private Drawable createShadowShape()
-    {
-        if (shadowX != 0 || shadowY !=0)
-        {
-            GradientDrawable shadow = (GradientDrawable) createShape(shadowColor,  0);
-            shadow.setStroke(0 , 0);
-            return shadow;
-        } else {
-            return null;
+    /**
+     * Builds background for the current spec into {@link BackgroundCache}, so the first layout only copies it.
+     * Shapes with half height radius depend on a layout and can't be prepared.
+     */
+    private void prepareBackground() {
+        if (!spec.isShapeRadiusHalfHeight() && !spec.drawsNothing() && !BackgroundCache.contains(spec)) {
+            BackgroundCache.put(spec, createBackground(spec));
+            DrawMeMetrics.onDrawableAllocated(mView.getContext());
         }
     }
 
-    private StateListDrawable createStateListDrawable() {
-        StateListDrawable states = new StateListDrawable();
+    private static String getOptimization(ShapeSpec spec) {
+        if (spec.drawsNothing()) {
+            return DrawMeDebug.NO_BACKGROUND;
+        } else if (isRippleBackground(spec) && spec.isStatePressed() && !hasRippleLayer(spec)) {
+            return DrawMeDebug.NO_RIPPLE_LAYER;
+        }
+        return null;
+    }
 
-        Drawable shadow = createShadowShape();
+    private void installBackground(ShapeSpec spec, Drawable drawable) {
+        backgroundSpec = spec;
+        background = drawable;
+        setBackgroundCompat(drawable);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            updateElevation(drawable == null ? null : spec);
+        }
+    }
 
-        if (shadow == null)
-        {
-            if (stateDisabled)
-            {
-                states.addState(new int[]{-android.R.attr.state_enabled}, createShape(backColorDisabled, strokeColorDisabled));
+    /**
+     * Sets elevation of the shadow or gives the view its previous elevation back. Elevation changed by the app
+     * in the meantime is kept.
+     *
+     * @param spec Spec of the installed background, null if there is none.
+     */
+    private void updateElevation(ShapeSpec spec) {
+        float current = ViewCompat.getElevation(mView);
+        if (spec != null && spec.hasShadow() && spec.getShadowMode() == ShapeSpec.SHADOW_MODE_ELEVATION) {
+            if (!ownsElevation || current != appliedElevation) {
+                originalElevation = current;
             }
-            if (statePressed)
-            {
-                states.addState(new int[]{android.R.attr.state_pressed}, createShape(backColorPressed, strokeColorPressed));
+            ownsElevation = true;
+            appliedElevation = spec.getShadowElevation();
+            // outline comes from the background (ViewOutlineProvider.BACKGROUND), so it follows the corner radii
+            ViewCompat.setElevation(mView, appliedElevation);
+        } else if (ownsElevation) {
+            ownsElevation = false;
+            if (current == appliedElevation) {
+                ViewCompat.setElevation(mView, originalElevation);
             }
-            states.addState(new int[]{}, createShape(backColor, strokeColor));
-            return states;
-        } else {
+        }
+    }
 
-            if (stateDisabled)
-            {
-                states.addState(new int[]{-android.R.attr.state_enabled},
-                        addShadow(createShape(backColorDisabled, strokeColorDisabled) , shadow));
-            }
-            if (statePressed)
-            {
-                states.addState(new int[]{android.R.attr.state_pressed},
-                        addShadow(createShape(backColorPressed, strokeColorPressed) , shadow));
-            }
-            states.addState(new int[]{},
-                    addShadow(createShape(backColor, strokeColor) , shadow));
-            return states;
+    private void setBackgroundCompat(Drawable drawable) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mView.setBackground(drawable);
+        } else {
+            mView.setBackgroundDrawable(drawable);
         }
     }
 
-    private LayerDrawable addShadow(Drawable background, Drawable shadow)
-    {
-        Drawable[] layers = new Drawable[2];
-        layers[0] = shadow;
-        layers[1] = background;
+    /**
+     * @return Number of background rebuilds performed by all delegates.
+     */
+    public static long getPerformedRebuildCount() {
+        return performedRebuilds.get();
+    }
 
-        int l = shadowX > 0 ? shadowX : 0;
-        int t = shadowY > 0 ? shadowY : 0;
-        int r = shadowX < 0 ? -shadowX : 0;
-        int b = shadowY < 0 ? -shadowY : 0;
+    /**
+     * @return Number of background rebuilds skipped by all delegates, because shape hasn't changed.
+     */
+    public static long getSkippedRebuildCount() {
+        return skippedRebuilds.get();
+    }
 
-        LayerDrawable layerList = new LayerDrawable(layers);
-        layerList.setLayerInset(0, l, t, r, b);
-        layerList.setLayerInset(1, r , b , l , t);
-        return layerList;
+    /**
+     * Enables async mode for all delegates created afterwards.
+     *
+     * @see #setAsyncBackground(boolean)
+     */
+    public static void setDefaultAsyncBackground(boolean asyncBackground) {
+        defaultAsyncBackground = asyncBackground;
     }
 
-    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
-    private Drawable createRippleDrawable() {
-        if (!statePressed) {
-            return getRippleContentDrawable();
-        } else if (backColorPressed == Color.TRANSPARENT && strokeColorPressed != Color.TRANSPARENT) {
-            // highlight only stroke
-            return new RippleDrawable(ColorStateList.valueOf(strokeColorPressed), getRippleContentDrawable(), createShape(Color.TRANSPARENT, Color.WHITE));
+    public boolean isAsyncBackground() {
+        return asyncBackground;
+    }
 
+    /**
+     * In async mode ripple backgrounds which aren't cached yet are built on a background thread.
+     * Until then view keeps its previous background, or gets a simple one without ripple.
+     * Building is cancelled when spec changes again.
+     */
+    public void setAsyncBackground(boolean asyncBackground) {
+        this.asyncBackground = asyncBackground;
+    }
+
+    private static boolean isRippleBackground(ShapeSpec spec) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && spec.isRippleEffect();
+    }
+
+    /**
+     * Creates background drawable, the same one a widget with this spec would get. Safe to call from any thread.
+     * Doesn't need a view, so it can be used to render a spec off screen, eg. into a bitmap for comparison.
+     *
+     * @param spec Shape spec of the background.
+     * @return Background drawable, not cached.
+     */
+    public static Drawable createBackground(ShapeSpec spec) {
+        long start = DrawMeMetrics.isEnabled() ? System.nanoTime() : 0;
+        Drawable background;
+        if (isRippleBackground(spec)) {
+            boolean trace = DrawMeTrace.begin("createRippleDrawable");
+            background = createRippleDrawable(spec);
+            DrawMeTrace.end(trace);
         } else {
-            return new RippleDrawable(ColorStateList.valueOf(backColorPressed), getRippleContentDrawable(), createShape(Color.WHITE, Color.WHITE));
+            boolean trace = DrawMeTrace.begin("createShape");
+            background = createStateListDrawable(spec);
+            DrawMeTrace.end(trace);
+        }
+        if (start != 0) {
+            DrawMeMetrics.onBackgroundBuilt(System.nanoTime() - start);
         }
+        return background;
     }
 
     /**
-     * Creates content drawable for a RippleDrawable.
+     * Applies colors of a new spec to a background built by {@link #createBackground(ShapeSpec)}.
      *
-     * @return
+     * @return False if the background can't be recolored and has to be rebuilt.
      */
-    private Drawable getRippleContentDrawable() {
-        if (!stateDisabled) {
-            return createShape(backColor, strokeColor);
+    private static boolean recolorBackground(Drawable background, ShapeSpec oldSpec, ShapeSpec newSpec) {
+        if (isRippleBackground(newSpec)) {
+            return recolorRippleDrawable(background, oldSpec, newSpec);
         } else {
-            StateListDrawable states = new StateListDrawable();
-            states.addState(new int[]{-android.R.attr.state_enabled}, createShape(backColorDisabled, strokeColorDisabled));
-            states.addState(new int[]{}, createShape(backColor, strokeColor));
-            return states;
+            return recolorShapeDrawable(background, newSpec);
         }
     }
 
+    private static boolean recolorShapeDrawable(Drawable drawable, ShapeSpec spec) {
+        if (drawable instanceof DrawMeDrawable) {
+            ((DrawMeDrawable) drawable).setSpec(spec);
+            return true;
+        } else if (drawable instanceof RasterShapeDrawable) {
+            ((RasterShapeDrawable) drawable).setSpec(spec);
+            return true;
+        }
+        return false;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static boolean recolorRippleDrawable(Drawable drawable, ShapeSpec oldSpec, ShapeSpec newSpec) {
+        if (hasRippleLayer(oldSpec) != hasRippleLayer(newSpec)) {
+            return false;
+        }
+        if (!hasRippleLayer(newSpec)) {
+            return recolorShapeDrawable(drawable, getRippleContentSpec(newSpec));
+        }
+        if (!(drawable instanceof RippleDrawable) || isStrokeOnlyRipple(oldSpec) != isStrokeOnlyRipple(newSpec)) {
+            // mask has to be rebuilt
+            return false;
+        }
+        RippleDrawable ripple = (RippleDrawable) drawable.mutate();
+        if (!recolorShapeDrawable(ripple.getDrawable(0), getRippleContentSpec(newSpec))) {
+            return false;
+        }
+        ripple.setColor(ColorStateList.valueOf(getRippleColor(newSpec)));
+        return true;
+    }
+
     /**
-     * Calculates default color value for pressed color.
-     * On PreL mixes normal state color with a "shadow mask", on L uses theme attribute colorControlHighlight.
+     * Creates background shape with all states - setups background, stroke, radius and shadow.
      *
-     * @param normalColor
-     * @return
+     * @return Shape drawable.
      */
-    @ColorInt
-    private int defaultPressedColor(int normalColor) {
-        if (maskBrightnessThreshold > 0 && Coloring.getColorBrightness(normalColor) < maskBrightnessThreshold) {
-            return Coloring.mix(maskColorPressedInverse, normalColor);
+    private static Drawable createStateListDrawable(ShapeSpec spec) {
+        if (spec.isRasterize()) {
+            return new RasterShapeDrawable(spec);
+        } else {
+            return new DrawMeDrawable(spec);
         }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static Drawable createRippleDrawable(ShapeSpec spec) {
+        if (!hasRippleLayer(spec)) {
+            return getRippleContentDrawable(spec);
+        } else if (isStrokeOnlyRipple(spec)) {
+            // highlight only stroke
+            return new RippleDrawable(ColorStateList.valueOf(getRippleColor(spec)), getRippleContentDrawable(spec), createMask(spec, Color.TRANSPARENT));
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && rippleUseControlHighlight) {
-            return Coloring.getThemeColor(mView.getContext(), R.attr.colorControlHighlight);
         } else {
-            return Coloring.mix(maskColorPressed, normalColor);
+            return new RippleDrawable(ColorStateList.valueOf(getRippleColor(spec)), getRippleContentDrawable(spec), createMask(spec, Color.WHITE));
         }
     }
 
     /**
-     * Calculates default color value for disabled color.
-     * Mixes state color with a "lighter mask".
+     * @return False if there is no pressed state or its ripple would be fully transparent.
+     */
+    private static boolean hasRippleLayer(ShapeSpec spec) {
+        return spec.isStatePressed() && Color.alpha(getRippleColor(spec)) != 0;
+    }
+
+    private static boolean isStrokeOnlyRipple(ShapeSpec spec) {
+        return spec.getBackColorPressed() == Color.TRANSPARENT && spec.getStrokeColorPressed() != Color.TRANSPARENT;
+    }
+
+    private static int getRippleColor(ShapeSpec spec) {
+        return isStrokeOnlyRipple(spec) ? spec.getStrokeColorPressed() : spec.getBackColorPressed();
+    }
+
+    /**
+     * Creates content drawable for a RippleDrawable - without pressed state and shadow.
      *
-     * @param normalColor
      * @return
      */
-    @ColorInt
-    private int defaultDisabledColor(int normalColor) {
-        return Coloring.mix(maskColorDisabled, normalColor);
+    private static Drawable getRippleContentDrawable(ShapeSpec spec) {
+        return createStateListDrawable(getRippleContentSpec(spec));
     }
 
+    private static ShapeSpec getRippleContentSpec(ShapeSpec spec) {
+        return spec.buildUpon()
+                .statePressed(false)
+                .shadowX(0)
+                .shadowY(0)
+                .build();
+    }
+
+    /**
+     * Creates mask drawable for a RippleDrawable.
+     *
+     * @param backgroundColor White to highlight whole shape, transparent to highlight only stroke.
+     * @return
+     */
+    private static Drawable createMask(ShapeSpec spec, int backgroundColor) {
+        return new DrawMeDrawable(spec.buildUpon()
+                .backColor(backgroundColor)
+                .strokeColor(Color.WHITE)
+                .statePressed(false)
+                .stateDisabled(false)
+                .shadowX(0)
+                .shadowY(0)
+                .build());
+    }
+
+    public ShapeSpec getSpec()
+    {
+        return spec;
+    }
+
+    public void setSpec(ShapeSpec spec)
+    {
+        this.spec = spec;
+        updateLayout();
+    }
 
     public int getBackColor()
     {
-        return backColor;
+        return spec.getBackColor();
     }
 
     public void setBackColor(int backColor)
     {
-        this.backColor = backColor;
+        spec = spec.buildUpon().backColor(backColor).build();
         updateLayout();
     }
 
     public int getBackColorPressed()
     {
-        return backColorPressed;
+        return spec.getBackColorPressed();
     }
 
     public void setBackColorPressed(int backColorPressed)
     {
-        this.backColorPressed = backColorPressed;
+        spec = spec.buildUpon().backColorPressed(backColorPressed).build();
         updateLayout();
     }
 
     public int getBackColorDisabled()
     {
-        return backColorDisabled;
+        return spec.getBackColorDisabled();
     }
 
     public void setBackColorDisabled(int backColorDisabled)
     {
-        this.backColorDisabled = backColorDisabled;
+        spec = spec.buildUpon().backColorDisabled(backColorDisabled).build();
         updateLayout();
     }
 
     public int getStroke()
     {
-        return stroke;
+        return spec.getStroke();
     }
 
     public void setStroke(int stroke)
     {
-        this.stroke = stroke;
+        spec = spec.buildUpon().stroke(stroke).build();
         updateLayout();
     }
 
     public int getStrokeColor()
     {
-        return strokeColor;
+        return spec.getStrokeColor();
     }
 
     public void setStrokeColor(int strokeColor)
     {
-        this.strokeColor = strokeColor;
+        spec = spec.buildUpon().strokeColor(strokeColor).build();
         updateLayout();
     }
 
     public int getStrokeColorPressed()
     {
-        return strokeColorPressed;
+        return spec.getStrokeColorPressed();
     }
 
     public void setStrokeColorPressed(int strokeColorPressed)
     {
-        this.strokeColorPressed = strokeColorPressed;
+        spec = spec.buildUpon().strokeColorPressed(strokeColorPressed).build();
         updateLayout();
     }
 
     public int getStrokeColorDisabled()
     {
-        return strokeColorDisabled;
+        return spec.getStrokeColorDisabled();
     }
 
     public void setStrokeColorDisabled(int strokeColorDisabled)
     {
-        this.strokeColorDisabled = strokeColorDisabled;
+        spec = spec.buildUpon().strokeColorDisabled(strokeColorDisabled).build();
         updateLayout();
     }
 
     public int getRadius()
     {
-        return radius;
+        return spec.getRadius();
     }
 
     public void setRadius(int radius)
     {
-        this.radius = radius;
+        spec = spec.buildUpon().radius(radius).build();
         updateLayout();
     }
 
     public int getRadiusBottomLeft()
     {
-        return radiusBottomLeft;
+        return spec.getRadiusBottomLeft();
     }
 
     public void setRadiusBottomLeft(int radiusBottomLeft)
     {
-        this.radiusBottomLeft = radiusBottomLeft;
+        spec = spec.buildUpon().radiusBottomLeft(radiusBottomLeft).build();
         updateLayout();
     }
 
     public int getRadiusBottomRight()
     {
-        return radiusBottomRight;
+        return spec.getRadiusBottomRight();
     }
 
     public void setRadiusBottomRight(int radiusBottomRight)
     {
-        this.radiusBottomRight = radiusBottomRight;
+        spec = spec.buildUpon().radiusBottomRight(radiusBottomRight).build();
         updateLayout();
     }
 
     public int getRadiusTopLeft()
     {
-        return radiusTopLeft;
+        return spec.getRadiusTopLeft();
     }
 
     public void setRadiusTopLeft(int radiusTopLeft)
     {
-        this.radiusTopLeft = radiusTopLeft;
+        spec = spec.buildUpon().radiusTopLeft(radiusTopLeft).build();
         updateLayout();
     }
 
     public int getRadiusTopRight()
     {
-        return radiusTopRight;
+        return spec.getRadiusTopRight();
     }
 
     public void setRadiusTopRight(int radiusTopRight)
     {
-        this.radiusTopRight = radiusTopRight;
+        spec = spec.buildUpon().radiusTopRight(radiusTopRight).build();
         updateLayout();
     }
 
     public float getMaskBrightnessThreshold()
     {
-        return maskBrightnessThreshold;
+        return spec.getMaskBrightnessThreshold();
     }
 
     public void setMaskBrightnessThreshold(float maskBrightnessThreshold)
     {
-        this.maskBrightnessThreshold = maskBrightnessThreshold;
+        spec = spec.buildUpon().maskBrightnessThreshold(maskBrightnessThreshold).build();
         updateLayout();
     }
 
     public int getMaskColorPressed()
     {
-        return maskColorPressed;
+        return spec.getMaskColorPressed();
     }
 
     public void setMaskColorPressed(int maskColorPressed)
     {
-        this.maskColorPressed = maskColorPressed;
+        spec = spec.buildUpon().maskColorPressed(maskColorPressed).build();
         updateLayout();
     }
 
     public int getMaskColorPressedInverse()
     {
-        return maskColorPressedInverse;
+        return spec.getMaskColorPressedInverse();
     }
 
     public void setMaskColorPressedInverse(int maskColorPressedInverse)
     {
-        this.maskColorPressedInverse = maskColorPressedInverse;
+        spec = spec.buildUpon().maskColorPressedInverse(maskColorPressedInverse).build();
         updateLayout();
     }
 
     public int getMaskColorDisabled()
     {
-        return maskColorDisabled;
+        return spec.getMaskColorDisabled();
     }
 
     public void setMaskColorDisabled(int maskColorDisabled)
     {
-        this.maskColorDisabled = maskColorDisabled;
+        spec = spec.buildUpon().maskColorDisabled(maskColorDisabled).build();
         updateLayout();
     }
 
     public boolean isRippleEffect()
     {
-        return rippleEffect;
+        return spec.isRippleEffect();
     }
 
     public void setRippleEffect(boolean rippleEffect)
     {
-        this.rippleEffect = rippleEffect;
+        spec = spec.buildUpon().rippleEffect(rippleEffect).build();
         updateLayout();
     }
 
     public boolean isRippleUseControlHighlight()
     {
-        return rippleUseControlHighlight;
+        return spec.isRippleUseControlHighlight();
     }
 
     public void setRippleUseControlHighlight(boolean rippleUseControlHighlight)
     {
-        this.rippleUseControlHighlight = rippleUseControlHighlight;
+        spec = spec.buildUpon().rippleUseControlHighlight(rippleUseControlHighlight).build();
         updateLayout();
     }
 
     public boolean isStatePressed()
     {
-        return statePressed;
+        return spec.isStatePressed();
     }
 
     public void setStatePressed(boolean statePressed)
     {
-        this.statePressed = statePressed;
+        spec = spec.buildUpon().statePressed(statePressed).build();
         updateLayout();
     }
 
     public boolean isStateDisabled()
     {
-        return stateDisabled;
+        return spec.isStateDisabled();
     }
 
     public void setStateDisabled(boolean stateDisabled)
     {
-        this.stateDisabled = stateDisabled;
+        spec = spec.buildUpon().stateDisabled(stateDisabled).build();
         updateLayout();
     }
 
     public boolean isShapeEqualWidthHeight()
     {
-        return shapeEqualWidthHeight;
+        return spec.isShapeEqualWidthHeight();
     }
 
     public void setShapeEqualWidthHeight(boolean shapeEqualWidthHeight)
     {
-        this.shapeEqualWidthHeight = shapeEqualWidthHeight;
+        spec = spec.buildUpon().shapeEqualWidthHeight(shapeEqualWidthHeight).build();
         updateLayout();
     }
 
     public boolean isShapeRadiusHalfHeight()
     {
-        return shapeRadiusHalfHeight;
+        return spec.isShapeRadiusHalfHeight();
     }
 
     public void setShapeRadiusHalfHeight(boolean shapeRadiusHalfHeight)
     {
-        this.shapeRadiusHalfHeight = shapeRadiusHalfHeight;
+        spec = spec.buildUpon().shapeRadiusHalfHeight(shapeRadiusHalfHeight).build();
         updateLayout();
     }
-}
\ No newline at end of file
+
+    public boolean isRasterize()
+    {
+        return spec.isRasterize();
+    }
+
+    public void setRasterize(boolean rasterize)
+    {
+        spec = spec.buildUpon().rasterize(rasterize).build();
+        updateLayout();
+    }
+
+    /**
+     * Batch of property changes. Nothing changes until {@link #apply()} or {@link #commit()} is called,
+     * then all values are swapped at once and background is rebuilt only once.
+     */
+    public class Editor {
+        private final ShapeSpec.Builder builder = spec.buildUpon();
+
+        public Editor backColor(int backColor) {
+            builder.backColor(backColor);
+            return this;
+        }
+
+        public Editor backColorPressed(int backColorPressed) {
+            builder.backColorPressed(backColorPressed);
+            return this;
+        }
+
+        public Editor backColorDisabled(int backColorDisabled) {
+            builder.backColorDisabled(backColorDisabled);
+            return this;
+        }
+
+        public Editor stroke(int stroke) {
+            builder.stroke(stroke);
+            return this;
+        }
+
+        public Editor strokeColor(int strokeColor) {
+            builder.strokeColor(strokeColor);
+            return this;
+        }
+
+        public Editor strokeColorPressed(int strokeColorPressed) {
+            builder.strokeColorPressed(strokeColorPressed);
+            return this;
+        }
+
+        public Editor strokeColorDisabled(int strokeColorDisabled) {
+            builder.strokeColorDisabled(strokeColorDisabled);
+            return this;
+        }
+
+        public Editor radius(int radius) {
+            builder.radius(radius);
+            return this;
+        }
+
+        public Editor radiusBottomLeft(int radiusBottomLeft) {
+            builder.radiusBottomLeft(radiusBottomLeft);
+            return this;
+        }
+
+        public Editor radiusBottomRight(int radiusBottomRight) {
+            builder.radiusBottomRight(radiusBottomRight);
+            return this;
+        }
+
+        public Editor radiusTopLeft(int radiusTopLeft) {
+            builder.radiusTopLeft(radiusTopLeft);
+            return this;
+        }
+
+        public Editor radiusTopRight(int radiusTopRight) {
+            builder.radiusTopRight(radiusTopRight);
+            return this;
+        }
+
+        public Editor maskBrightnessThreshold(float maskBrightnessThreshold) {
+            builder.maskBrightnessThreshold(maskBrightnessThreshold);
+            return this;
+        }
+
+        public Editor maskColorPressed(int maskColorPressed) {
+            builder.maskColorPressed(maskColorPressed);
+            return this;
+        }
+
+        public Editor maskColorPressedInverse(int maskColorPressedInverse) {
+            builder.maskColorPressedInverse(maskColorPressedInverse);
+            return this;
+        }
+
+        public Editor maskColorDisabled(int maskColorDisabled) {
+            builder.maskColorDisabled(maskColorDisabled);
+            return this;
+        }
+
+        public Editor rippleEffect(boolean rippleEffect) {
+            builder.rippleEffect(rippleEffect);
+            return this;
+        }
+
+        public Editor rippleUseControlHighlight(boolean rippleUseControlHighlight) {
+            builder.rippleUseControlHighlight(rippleUseControlHighlight);
+            return this;
+        }
+
+        public Editor statePressed(boolean statePressed) {
+            builder.statePressed(statePressed);
+            return this;
+        }
+
+        public Editor stateDisabled(boolean stateDisabled) {
+            builder.stateDisabled(stateDisabled);
+            return this;
+        }
+
+        public Editor shapeEqualWidthHeight(boolean shapeEqualWidthHeight) {
+            builder.shapeEqualWidthHeight(shapeEqualWidthHeight);
+            return this;
+        }
+
+        public Editor shapeRadiusHalfHeight(boolean shapeRadiusHalfHeight) {
+            builder.shapeRadiusHalfHeight(shapeRadiusHalfHeight);
+            return this;
+        }
+
+        public Editor rasterize(boolean rasterize) {
+            builder.rasterize(rasterize);
+            return this;
+        }
+
+        /**
+         * Rebuilds background on the next frame, merged with any other pending rebuild.
+         */
+        public void apply() {
+            spec = builder.build();
+            requestUpdateLayout();
+        }
+
+        /**
+         * Rebuilds background immediately.
+         */
+        public void commit() {
+            spec = builder.build();
+            updateLayout(DrawMeMetrics.CAUSE_BATCH);
+        }
+    }
+
+    /**
+     * Builds background on {@link DrawMeExecutor} and installs it on the main thread,
+     * unless it has been cancelled in the meantime.
+     */
+    private final class BackgroundTask implements Runnable {
+        private final ShapeSpec spec;
+        private volatile boolean cancelled;
+        private Future<?> future;
+        private Drawable result;
+
+        private final Runnable install = new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled && backgroundTask == BackgroundTask.this) {
+                    backgroundTask = null;
+                    installBackground(spec, result);
+                }
+            }
+        };
+
+        BackgroundTask(ShapeSpec spec) {
+            this.spec = spec;
+        }
+
+        void start() {
+            future = DrawMeExecutor.submit(this);
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            DrawMeExecutor.removeFromMain(install);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            result = createBackground(spec);
+            DrawMeMetrics.onDrawableAllocated(mView.getContext());
+            BackgroundCache.put(spec, result);
+            DrawMeExecutor.postToMain(install);
+        }
+    }
+}
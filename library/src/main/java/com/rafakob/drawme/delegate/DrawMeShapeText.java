@@ -2,8 +2,10 @@ package com.rafakob.drawme.delegate;
 
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.PorterDuff;
+import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.support.annotation.AttrRes;
@@ -14,15 +16,35 @@ import android.view.View;
 import android.widget.TextView;
 
 import com.rafakob.drawme.R;
+import com.rafakob.drawme.util.ColorStateListCache;
+import com.rafakob.drawme.util.DrawMeExecutor;
+import com.rafakob.drawme.util.DrawMeMetrics;
+import com.rafakob.drawme.util.DrawMeTrace;
 import com.rafakob.drawme.util.FontCache;
+import com.rafakob.drawme.util.TintCache;
+
+import java.util.Arrays;
 
 public class DrawMeShapeText extends DrawMeShape {
-    protected String font;
-    protected int textColor;
-    protected int textColorPressed;
-    protected int textColorDisabled;
-    protected int tintColor;
-    protected int tintMode;
+    private static final int[] TEXT_ATTRS = AttributeCache.sorted(R.styleable.DrawMeText);
+    private static final PorterDuff.Mode[] TINT_MODES = createTintModes();
+    private static final int[][] TEXT_STATES = new int[][]{
+            new int[]{-android.R.attr.state_enabled},
+            new int[]{android.R.attr.state_pressed},
+            new int[]{},
+    };
+
+    protected TextSpec textSpec;
+    /* Interned text colors of textColorsSpec, looked up again only when text spec changes */
+    private TextSpec textColorsSpec;
+    private ColorStateList textColors;
+    /* Changes of a view constructed off the main thread, applied once it's attached
+       unless the app sets its own values first */
+    private Drawable[] pendingDrawables;
+    private Typeface pendingTypeface;
+    /* Typeface the view had before a font was applied, restored when a rebind clears the font */
+    private Typeface defaultTypeface;
+    private boolean fontApplied;
 
     public DrawMeShapeText(Context context, View view) {
         super(context, view);
@@ -37,41 +59,145 @@ public class DrawMeShapeText extends DrawMeShape {
     }
 
     protected void obtainTextAttributes(TypedArray a) {
-        font = a.getString(R.styleable.DrawMeText_dm_font);
-        textColor = a.getColor(R.styleable.DrawMeText_dm_textColor, ((TextView) mView).getTextColors().getDefaultColor());
-        textColorPressed = a.getColor(R.styleable.DrawMeText_dm_textColorPressed, textColor);
-        textColorDisabled = a.getColor(R.styleable.DrawMeText_dm_textColorDisabled, textColor);
-
-        tintColor = a.getColor(R.styleable.DrawMeText_dm_drawableTint, 0);
-        tintMode = a.getInt(R.styleable.DrawMeText_dm_drawableTintMode, 0);
-
-        Drawable left = tintDrawable(a.getDrawable(R.styleable.DrawMeText_android_drawableLeft));
-        Drawable start = tintDrawable(a.getDrawable(R.styleable.DrawMeText_android_drawableStart));
-        Drawable top = tintDrawable(a.getDrawable(R.styleable.DrawMeText_android_drawableTop));
-        Drawable right = tintDrawable(a.getDrawable(R.styleable.DrawMeText_android_drawableRight));
-        Drawable end = tintDrawable(a.getDrawable(R.styleable.DrawMeText_android_drawableEnd));
-        Drawable bottom = tintDrawable(a.getDrawable(R.styleable.DrawMeText_android_drawableBottom));
+        int textColor = a.getColor(R.styleable.DrawMeText_dm_textColor, ((TextView) mView).getTextColors().getDefaultColor());
+        textSpec = new TextSpec.Builder()
+                .font(a.getString(R.styleable.DrawMeText_dm_font))
+                .textColor(textColor)
+                .textColorPressed(a.getColor(R.styleable.DrawMeText_dm_textColorPressed, textColor))
+                .textColorDisabled(a.getColor(R.styleable.DrawMeText_dm_textColorDisabled, textColor))
+                .tintColor(a.getColor(R.styleable.DrawMeText_dm_drawableTint, 0))
+                .tintMode(a.getInt(R.styleable.DrawMeText_dm_drawableTintMode, 0))
+                .build();
+
+        Drawable left = getCompoundDrawable(a, R.styleable.DrawMeText_android_drawableLeft);
+        Drawable start = getCompoundDrawable(a, R.styleable.DrawMeText_android_drawableStart);
+        Drawable top = getCompoundDrawable(a, R.styleable.DrawMeText_android_drawableTop);
+        Drawable right = getCompoundDrawable(a, R.styleable.DrawMeText_android_drawableRight);
+        Drawable end = getCompoundDrawable(a, R.styleable.DrawMeText_android_drawableEnd);
+        Drawable bottom = getCompoundDrawable(a, R.styleable.DrawMeText_android_drawableBottom);
+
+        setCompoundDrawables(left == null ? start : left, top, right == null ? end : right, bottom);
+    }
 
-        ((TextView) mView).setCompoundDrawablesWithIntrinsicBounds(left == null ? start : left, top, right == null ? end : right, bottom);
+    private void setCompoundDrawables(Drawable left, Drawable top, Drawable right, Drawable bottom) {
+        if (DrawMeExecutor.isMainThread()) {
+            ((TextView) mView).setCompoundDrawablesWithIntrinsicBounds(left, top, right, bottom);
+            pendingDrawables = null;
+        } else {
+            pendingDrawables = new Drawable[]{left, top, right, bottom};
+        }
     }
 
     @Override
     public void obtainAttributes(Context context, AttributeSet attrs, @AttrRes int defStyleAttr) {
         super.obtainAttributes(context, attrs, defStyleAttr);
-        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.DrawMeText, defStyleAttr, 0);
-        obtainTextAttributes(typedArray);
-        typedArray.recycle();
 
-        if (!TextUtils.isEmpty(font))
+        boolean styleOnly = !AttributeCache.hasInlineAttributes(attrs, TEXT_ATTRS);
+        int style = AttributeCache.getStyle(attrs);
+        TextStyle cached = styleOnly ? AttributeCache.TEXTS.get(context.getTheme(), style, defStyleAttr) : null;
+        if (cached != null) {
+            textSpec = cached.resolve(((TextView) mView).getTextColors().getDefaultColor());
+            DrawMeMetrics.onAttributesResolved(true, true);
+        } else {
+            DrawMeMetrics.onAttributesResolved(true, false);
+            boolean trace = DrawMeTrace.begin("obtainTextAttributes", mView);
+            TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.DrawMeText, defStyleAttr, 0);
+            obtainTextAttributes(typedArray);
+            if (styleOnly && !hasCompoundDrawables(typedArray)) {
+                AttributeCache.TEXTS.put(context.getTheme(), style, defStyleAttr, new TextStyle(textSpec, typedArray));
+            }
+            typedArray.recycle();
+            DrawMeTrace.end(trace);
+        }
+
+        if (!TextUtils.isEmpty(textSpec.getFont()))
             applyFont();
     }
 
+    private static boolean hasCompoundDrawables(TypedArray a) {
+        return a.hasValue(R.styleable.DrawMeText_android_drawableLeft)
+                || a.hasValue(R.styleable.DrawMeText_android_drawableStart)
+                || a.hasValue(R.styleable.DrawMeText_android_drawableTop)
+                || a.hasValue(R.styleable.DrawMeText_android_drawableRight)
+                || a.hasValue(R.styleable.DrawMeText_android_drawableEnd)
+                || a.hasValue(R.styleable.DrawMeText_android_drawableBottom);
+    }
+
     private void applyFont() {
-        ((TextView) mView).setTypeface(FontCache.get(mView.getContext(), font));
+        if (!fontApplied) {
+            defaultTypeface = ((TextView) mView).getTypeface();
+            fontApplied = true;
+        }
+        Typeface typeface = FontCache.get(mView.getContext(), textSpec.getFont());
+        if (DrawMeExecutor.isMainThread()) {
+            ((TextView) mView).setTypeface(typeface);
+            pendingTypeface = null;
+        } else {
+            pendingTypeface = typeface;
+        }
+    }
+
+    @Override
+    public void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        Drawable[] drawables = pendingDrawables;
+        Typeface typeface = pendingTypeface;
+        pendingDrawables = null;
+        pendingTypeface = null;
+        if (drawables != null) {
+            ((TextView) mView).setCompoundDrawablesWithIntrinsicBounds(drawables[0], drawables[1], drawables[2], drawables[3]);
+        }
+        if (typeface != null) {
+            ((TextView) mView).setTypeface(typeface);
+        }
+    }
+
+    /**
+     * Has to be called by the view whenever its compound drawables are set,
+     * drawables from attributes which are still waiting for attach are dropped then.
+     */
+    public void onCompoundDrawablesSet() {
+        pendingDrawables = null;
     }
 
-    private Drawable tintDrawable(Drawable drawable) {
-        return tintDrawable(drawable, tintColor, tintMode);
+    /**
+     * Has to be called by the view whenever its typeface is set,
+     * font from attributes which is still waiting for attach is dropped then.
+     */
+    public void onTypefaceSet() {
+        pendingTypeface = null;
+    }
+
+    private Drawable getCompoundDrawable(TypedArray a, int index) {
+        Drawable drawable = loadCompoundDrawable(a, index);
+        if (drawable != null) {
+            DrawMeMetrics.onDrawableAllocated(mView.getContext());
+        }
+        return drawable;
+    }
+
+    /**
+     * Tinted drawables coming from resources are shared through {@link TintCache},
+     * widgets with the same icon and tint get copies of a single tinted state.
+     */
+    private Drawable loadCompoundDrawable(TypedArray a, int index) {
+        int tintColor = textSpec.getTintColor();
+        int tintMode = textSpec.getTintMode();
+        int resId = tintColor == 0 ? 0 : a.getResourceId(index, 0);
+        if (resId == 0) {
+            return tintDrawable(a.getDrawable(index), tintColor, tintMode);
+        }
+
+        Resources resources = mView.getResources();
+        Drawable cached = TintCache.get(resId, tintColor, tintMode, resources);
+        if (cached != null) {
+            return cached;
+        }
+        Drawable tinted = tintDrawable(a.getDrawable(index), tintColor, tintMode);
+        if (tinted != null) {
+            TintCache.put(resId, tintColor, tintMode, tinted);
+        }
+        return tinted;
     }
 
     private Drawable tintDrawable(Drawable drawable, int tintColor, int tintMode) {
@@ -86,131 +212,184 @@ public class DrawMeShapeText extends DrawMeShape {
         return wrapDrawable;
     }
 
-    private PorterDuff.Mode intToMode(int val) {
-        switch (val) {
-            default:
-            case 0:
-                return PorterDuff.Mode.CLEAR;
-            case 1:
-                return PorterDuff.Mode.SRC;
-            case 2:
-                return PorterDuff.Mode.DST;
-            case 3:
-                return PorterDuff.Mode.SRC_OVER;
-            case 4:
-                return PorterDuff.Mode.DST_OVER;
-            case 5:
-                return PorterDuff.Mode.SRC_IN;
-            case 6:
-                return PorterDuff.Mode.DST_IN;
-            case 7:
-                return PorterDuff.Mode.SRC_OUT;
-            case 8:
-                return PorterDuff.Mode.DST_OUT;
-            case 9:
-                return PorterDuff.Mode.SRC_ATOP;
-            case 10:
-                return PorterDuff.Mode.DST_ATOP;
-            case 11:
-                return PorterDuff.Mode.XOR;
-            case 16:
-                return PorterDuff.Mode.DARKEN;
-            case 17:
-                return PorterDuff.Mode.LIGHTEN;
-            case 13:
-                return PorterDuff.Mode.MULTIPLY;
-            case 14:
-                return PorterDuff.Mode.SCREEN;
-            case 12:
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-                    return PorterDuff.Mode.ADD;
+    private static PorterDuff.Mode intToMode(int val) {
+        return val >= 0 && val < TINT_MODES.length ? TINT_MODES[val] : PorterDuff.Mode.CLEAR;
+    }
+
+    /**
+     * Maps values of dm_drawableTintMode to modes, unknown values (and "none") map to CLEAR.
+     */
+    private static PorterDuff.Mode[] createTintModes() {
+        PorterDuff.Mode[] modes = new PorterDuff.Mode[18];
+        Arrays.fill(modes, PorterDuff.Mode.CLEAR);
+        modes[1] = PorterDuff.Mode.SRC;
+        modes[2] = PorterDuff.Mode.DST;
+        modes[3] = PorterDuff.Mode.SRC_OVER;
+        modes[4] = PorterDuff.Mode.DST_OVER;
+        modes[5] = PorterDuff.Mode.SRC_IN;
+        modes[6] = PorterDuff.Mode.DST_IN;
+        modes[7] = PorterDuff.Mode.SRC_OUT;
+        modes[8] = PorterDuff.Mode.DST_OUT;
+        modes[9] = PorterDuff.Mode.SRC_ATOP;
+        modes[10] = PorterDuff.Mode.DST_ATOP;
+        modes[11] = PorterDuff.Mode.XOR;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            modes[12] = PorterDuff.Mode.ADD;
+        }
+        modes[13] = PorterDuff.Mode.MULTIPLY;
+        modes[14] = PorterDuff.Mode.SCREEN;
+        modes[15] = PorterDuff.Mode.OVERLAY;
+        modes[16] = PorterDuff.Mode.DARKEN;
+        modes[17] = PorterDuff.Mode.LIGHTEN;
+        return modes;
+    }
+
+    private void resetFont() {
+        if (fontApplied) {
+            ((TextView) mView).setTypeface(defaultTypeface);
+            pendingTypeface = null;
+            fontApplied = false;
+        }
+    }
+
+    /**
+     * Binds new shape and text specs, see {@link #rebind(ShapeSpec)}.
+     * A spec without a font restores the typeface the view had before a font was applied.
+     */
+    public void rebind(ShapeSpec spec, TextSpec textSpec) {
+        TextSpec previous = this.textSpec;
+        this.textSpec = textSpec;
+        rebind(spec);
+        if (previous != textSpec) {
+            if (!TextUtils.equals(previous.getFont(), textSpec.getFont())) {
+                if (TextUtils.isEmpty(textSpec.getFont())) {
+                    resetFont();
+                } else {
+                    applyFont();
                 }
-                break;
-            case 15:
-                return PorterDuff.Mode.OVERLAY;
+            }
+            applyTextColors();
         }
-        return PorterDuff.Mode.CLEAR;
     }
 
     @Override
     public void updateLayout() {
         super.updateLayout();
-        if (textColorPressed != Integer.MAX_VALUE) {
-            ColorStateList textColors = ((TextView) mView).getTextColors();
-
-            ColorStateList colorStateList = new ColorStateList(
-                    new int[][]{
-                            new int[]{-android.R.attr.state_enabled},
-                            new int[]{android.R.attr.state_pressed},
-                            new int[]{},
-                    },
-                    new int[]{
-                            textColorDisabled,
-                            textColorPressed,
-                            textColor});
+        applyTextColors();
+    }
 
-            ((TextView) mView).setTextColor(colorStateList);
+    private void applyTextColors() {
+        if (textSpec.getTextColorPressed() != Integer.MAX_VALUE) {
+            if (textColors == null || textColorsSpec != textSpec) {
+                textColorsSpec = textSpec;
+                textColors = ColorStateListCache.get(TEXT_STATES,
+                        textSpec.getTextColor(), textSpec.getTextColorPressed(), textSpec.getTextColorDisabled());
+            }
+            // lists are interned, so an equal list is the same object - skip redundant text relayout
+            if (((TextView) mView).getTextColors() != textColors) {
+                ((TextView) mView).setTextColor(textColors);
+            }
         }
     }
 
 
+    public TextSpec getTextSpec()
+    {
+        return textSpec;
+    }
+
+    public void setTextSpec(TextSpec textSpec)
+    {
+        this.textSpec = textSpec;
+    }
+
     public String getFont()
     {
-        return font;
+        return textSpec.getFont();
     }
 
     public void setFont(String font)
     {
-        this.font = font;
+        textSpec = textSpec.buildUpon().font(font).build();
     }
 
     public int getTextColor()
     {
-        return textColor;
+        return textSpec.getTextColor();
     }
 
     public void setTextColor(int textColor)
     {
-        this.textColor = textColor;
+        textSpec = textSpec.buildUpon().textColor(textColor).build();
     }
 
     public int getTextColorPressed()
     {
-        return textColorPressed;
+        return textSpec.getTextColorPressed();
     }
 
     public void setTextColorPressed(int textColorPressed)
     {
-        this.textColorPressed = textColorPressed;
+        textSpec = textSpec.buildUpon().textColorPressed(textColorPressed).build();
     }
 
     public int getTextColorDisabled()
     {
-        return textColorDisabled;
+        return textSpec.getTextColorDisabled();
     }
 
     public void setTextColorDisabled(int textColorDisabled)
     {
-        this.textColorDisabled = textColorDisabled;
+        textSpec = textSpec.buildUpon().textColorDisabled(textColorDisabled).build();
     }
 
     public int getTintColor()
     {
-        return tintColor;
+        return textSpec.getTintColor();
     }
 
     public void setTintColor(int tintColor)
     {
-        this.tintColor = tintColor;
+        textSpec = textSpec.buildUpon().tintColor(tintColor).build();
     }
 
     public int getTintMode()
     {
-        return tintMode;
+        return textSpec.getTintMode();
     }
 
     public void setTintMode(int tintMode)
     {
-        this.tintMode = tintMode;
+        textSpec = textSpec.buildUpon().tintMode(tintMode).build();
+    }
+
+    /**
+     * Text attributes resolved from styles. Text colors which weren't declared fall back
+     * to the text color of a particular view, so they are resolved per widget.
+     */
+    static final class TextStyle {
+        private final TextSpec spec;
+        private final boolean hasTextColor;
+        private final boolean hasTextColorPressed;
+        private final boolean hasTextColorDisabled;
+
+        TextStyle(TextSpec spec, TypedArray a) {
+            this.spec = spec;
+            this.hasTextColor = a.hasValue(R.styleable.DrawMeText_dm_textColor);
+            this.hasTextColorPressed = a.hasValue(R.styleable.DrawMeText_dm_textColorPressed);
+            this.hasTextColorDisabled = a.hasValue(R.styleable.DrawMeText_dm_textColorDisabled);
+        }
+
+        TextSpec resolve(int defaultTextColor) {
+            if (hasTextColor && hasTextColorPressed && hasTextColorDisabled) {
+                return spec;
+            }
+            int textColor = hasTextColor ? spec.getTextColor() : defaultTextColor;
+            return spec.buildUpon()
+                    .textColor(textColor)
+                    .textColorPressed(hasTextColorPressed ? spec.getTextColorPressed() : textColor)
+                    .textColorDisabled(hasTextColorDisabled ? spec.getTextColorDisabled() : textColor)
+                    .build();
+        }
     }
 }
@@ -0,0 +1,563 @@
+package com.rafakob.drawme.delegate;
+
+import android.graphics.Color;
+import android.support.annotation.ColorInt;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable set of shape attributes. Instances are interned - equal specs are always the same object,
+ * so they can be compared by reference and shared by any number of views.
+ * Use {@link Builder} to create a spec and {@link #buildUpon()} to derive a modified one.
+ */
+public final class ShapeSpec {
+    public static final int DEFAULT_MASK_COLOR_PRESSED = 0x1F000000;
+    public static final int DEFAULT_MASK_COLOR_PRESSED_INVERSE = 0x1DFFFFFF;
+    public static final int DEFAULT_MASK_COLOR_DISABLED = 0x6DFFFFFF;
+    /* Shadow is drawn as an offset copy of the shape */
+    public static final int SHADOW_MODE_PATH = 0;
+    /* Shadow is native elevation on Lollipop and a cached bitmap below */
+    public static final int SHADOW_MODE_ELEVATION = 1;
+
+    private static final WeakHashMap<ShapeSpec, WeakReference<ShapeSpec>> pool = new WeakHashMap<>();
+
+    /* Background color */
+    private final int backColor;
+    private final int backColorPressed;
+    private final int backColorDisabled;
+    /* Stroke */
+    private final int stroke;
+    private final int strokeColor;
+    private final int strokeColorPressed;
+    private final int strokeColorDisabled;
+    /* Corner radius */
+    private final int radius;
+    private final int radiusBottomLeft;
+    private final int radiusBottomRight;
+    private final int radiusTopLeft;
+    private final int radiusTopRight;
+    /* Mask */
+    private final float maskBrightnessThreshold;
+    private final int maskColorPressed;
+    private final int maskColorPressedInverse;
+    private final int maskColorDisabled;
+    /* Params */
+    private final boolean rippleEffect;
+    private final boolean rippleUseControlHighlight;
+    private final boolean statePressed;
+    private final boolean stateDisabled;
+    private final boolean shapeEqualWidthHeight;
+    private final boolean shapeRadiusHalfHeight;
+    private final boolean rasterize;
+    /* 2D Shadow */
+    private final int shadowX;
+    private final int shadowY;
+    private final int shadowColor;
+    private final int shadowMode;
+
+    private final int hash;
+
+    private ShapeSpec(Builder b) {
+        backColor = b.backColor;
+        backColorPressed = b.backColorPressed;
+        backColorDisabled = b.backColorDisabled;
+        stroke = b.stroke;
+        strokeColor = b.strokeColor;
+        strokeColorPressed = b.strokeColorPressed;
+        strokeColorDisabled = b.strokeColorDisabled;
+        radius = b.radius;
+        radiusBottomLeft = b.radiusBottomLeft;
+        radiusBottomRight = b.radiusBottomRight;
+        radiusTopLeft = b.radiusTopLeft;
+        radiusTopRight = b.radiusTopRight;
+        maskBrightnessThreshold = b.maskBrightnessThreshold;
+        maskColorPressed = b.maskColorPressed;
+        maskColorPressedInverse = b.maskColorPressedInverse;
+        maskColorDisabled = b.maskColorDisabled;
+        rippleEffect = b.rippleEffect;
+        rippleUseControlHighlight = b.rippleUseControlHighlight;
+        statePressed = b.statePressed;
+        stateDisabled = b.stateDisabled;
+        shapeEqualWidthHeight = b.shapeEqualWidthHeight;
+        shapeRadiusHalfHeight = b.shapeRadiusHalfHeight;
+        rasterize = b.rasterize;
+        shadowX = b.shadowX;
+        shadowY = b.shadowY;
+        shadowColor = b.shadowColor;
+        shadowMode = b.shadowMode;
+        hash = computeHash();
+    }
+
+    private int computeHash() {
+        int h = backColor;
+        h = 31 * h + backColorPressed;
+        h = 31 * h + backColorDisabled;
+        h = 31 * h + stroke;
+        h = 31 * h + strokeColor;
+        h = 31 * h + strokeColorPressed;
+        h = 31 * h + strokeColorDisabled;
+        h = 31 * h + radius;
+        h = 31 * h + radiusBottomLeft;
+        h = 31 * h + radiusBottomRight;
+        h = 31 * h + radiusTopLeft;
+        h = 31 * h + radiusTopRight;
+        h = 31 * h + Float.floatToIntBits(maskBrightnessThreshold);
+        h = 31 * h + maskColorPressed;
+        h = 31 * h + maskColorPressedInverse;
+        h = 31 * h + maskColorDisabled;
+        h = 31 * h + (rippleEffect ? 1 : 0);
+        h = 31 * h + (rippleUseControlHighlight ? 1 : 0);
+        h = 31 * h + (statePressed ? 1 : 0);
+        h = 31 * h + (stateDisabled ? 1 : 0);
+        h = 31 * h + (shapeEqualWidthHeight ? 1 : 0);
+        h = 31 * h + (shapeRadiusHalfHeight ? 1 : 0);
+        h = 31 * h + (rasterize ? 1 : 0);
+        h = 31 * h + shadowX;
+        h = 31 * h + shadowY;
+        h = 31 * h + shadowColor;
+        h = 31 * h + shadowMode;
+        return h;
+    }
+
+    /**
+     * Returns the canonical instance equal to a given spec.
+     */
+    private static ShapeSpec intern(ShapeSpec spec) {
+        synchronized (pool) {
+            WeakReference<ShapeSpec> ref = pool.get(spec);
+            ShapeSpec interned = ref == null ? null : ref.get();
+            if (interned == null) {
+                pool.put(spec, new WeakReference<>(spec));
+                interned = spec;
+            }
+            return interned;
+        }
+    }
+
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    /**
+     * Fills array in a format expected by {@link android.graphics.drawable.GradientDrawable#setCornerRadii(float[])}.
+     * Corner radii which are not specified (-1) fall back to {@link #getRadius()}.
+     *
+     * @param radii Array of 8 values.
+     */
+    public void getCornerRadii(float[] radii) {
+        radii[0] = radii[1] = radiusTopLeft >= 0 ? radiusTopLeft : radius;
+        radii[2] = radii[3] = radiusTopRight >= 0 ? radiusTopRight : radius;
+        radii[4] = radii[5] = radiusBottomRight >= 0 ? radiusBottomRight : radius;
+        radii[6] = radii[7] = radiusBottomLeft >= 0 ? radiusBottomLeft : radius;
+    }
+
+    public boolean hasShadow() {
+        return shadowX != 0 || shadowY != 0;
+    }
+
+    /**
+     * Pressed state counts whenever it's enabled - views get pressed without being clickable,
+     * eg. through their parent (duplicateParentState, dispatchSetPressed).
+     *
+     * @return True if background built for this spec wouldn't draw anything in any state.
+     */
+    public boolean drawsNothing() {
+        if (hasShadow() && Color.alpha(shadowColor) != 0) {
+            return false;
+        }
+        return !draws(backColor, strokeColor)
+                && !(statePressed && draws(backColorPressed, strokeColorPressed))
+                && !(stateDisabled && draws(backColorDisabled, strokeColorDisabled));
+    }
+
+    private boolean draws(int backColor, int strokeColor) {
+        return Color.alpha(backColor) != 0 || (stroke > 0 && Color.alpha(strokeColor) != 0);
+    }
+
+    /**
+     * @return Elevation matching the shadow offset, used in {@link #SHADOW_MODE_ELEVATION}.
+     */
+    public float getShadowElevation() {
+        return Math.max(Math.abs(shadowX), Math.abs(shadowY));
+    }
+
+    /**
+     * @return True if drawables built for both specs differ only in colors.
+     */
+    public boolean hasSameGeometry(ShapeSpec s) {
+        return stroke == s.stroke
+                && radius == s.radius
+                && radiusBottomLeft == s.radiusBottomLeft
+                && radiusBottomRight == s.radiusBottomRight
+                && radiusTopLeft == s.radiusTopLeft
+                && radiusTopRight == s.radiusTopRight
+                && rippleEffect == s.rippleEffect
+                && statePressed == s.statePressed
+                && stateDisabled == s.stateDisabled
+                && shapeEqualWidthHeight == s.shapeEqualWidthHeight
+                && shapeRadiusHalfHeight == s.shapeRadiusHalfHeight
+                && rasterize == s.rasterize
+                && shadowX == s.shadowX
+                && shadowY == s.shadowY
+                && shadowMode == s.shadowMode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ShapeSpec)) return false;
+        ShapeSpec s = (ShapeSpec) o;
+        return hash == s.hash
+                && backColor == s.backColor
+                && backColorPressed == s.backColorPressed
+                && backColorDisabled == s.backColorDisabled
+                && stroke == s.stroke
+                && strokeColor == s.strokeColor
+                && strokeColorPressed == s.strokeColorPressed
+                && strokeColorDisabled == s.strokeColorDisabled
+                && radius == s.radius
+                && radiusBottomLeft == s.radiusBottomLeft
+                && radiusBottomRight == s.radiusBottomRight
+                && radiusTopLeft == s.radiusTopLeft
+                && radiusTopRight == s.radiusTopRight
+                && Float.floatToIntBits(maskBrightnessThreshold) == Float.floatToIntBits(s.maskBrightnessThreshold)
+                && maskColorPressed == s.maskColorPressed
+                && maskColorPressedInverse == s.maskColorPressedInverse
+                && maskColorDisabled == s.maskColorDisabled
+                && rippleEffect == s.rippleEffect
+                && rippleUseControlHighlight == s.rippleUseControlHighlight
+                && statePressed == s.statePressed
+                && stateDisabled == s.stateDisabled
+                && shapeEqualWidthHeight == s.shapeEqualWidthHeight
+                && shapeRadiusHalfHeight == s.shapeRadiusHalfHeight
+                && rasterize == s.rasterize
+                && shadowX == s.shadowX
+                && shadowY == s.shadowY
+                && shadowColor == s.shadowColor
+                && shadowMode == s.shadowMode;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    public int getBackColor() {
+        return backColor;
+    }
+
+    public int getBackColorPressed() {
+        return backColorPressed;
+    }
+
+    public int getBackColorDisabled() {
+        return backColorDisabled;
+    }
+
+    public int getStroke() {
+        return stroke;
+    }
+
+    public int getStrokeColor() {
+        return strokeColor;
+    }
+
+    public int getStrokeColorPressed() {
+        return strokeColorPressed;
+    }
+
+    public int getStrokeColorDisabled() {
+        return strokeColorDisabled;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int getRadiusBottomLeft() {
+        return radiusBottomLeft;
+    }
+
+    public int getRadiusBottomRight() {
+        return radiusBottomRight;
+    }
+
+    public int getRadiusTopLeft() {
+        return radiusTopLeft;
+    }
+
+    public int getRadiusTopRight() {
+        return radiusTopRight;
+    }
+
+    public float getMaskBrightnessThreshold() {
+        return maskBrightnessThreshold;
+    }
+
+    public int getMaskColorPressed() {
+        return maskColorPressed;
+    }
+
+    public int getMaskColorPressedInverse() {
+        return maskColorPressedInverse;
+    }
+
+    public int getMaskColorDisabled() {
+        return maskColorDisabled;
+    }
+
+    public boolean isRippleEffect() {
+        return rippleEffect;
+    }
+
+    public boolean isRippleUseControlHighlight() {
+        return rippleUseControlHighlight;
+    }
+
+    public boolean isStatePressed() {
+        return statePressed;
+    }
+
+    public boolean isStateDisabled() {
+        return stateDisabled;
+    }
+
+    public boolean isShapeEqualWidthHeight() {
+        return shapeEqualWidthHeight;
+    }
+
+    public boolean isShapeRadiusHalfHeight() {
+        return shapeRadiusHalfHeight;
+    }
+
+    public boolean isRasterize() {
+        return rasterize;
+    }
+
+    public int getShadowX() {
+        return shadowX;
+    }
+
+    public int getShadowY() {
+        return shadowY;
+    }
+
+    public int getShadowColor() {
+        return shadowColor;
+    }
+
+    public int getShadowMode() {
+        return shadowMode;
+    }
+
+    /**
+     * Builder of {@link ShapeSpec}. Defaults are the same as the XML attribute defaults, except pressed and disabled
+     * colors which are not derived from normal colors - set them explicitly.
+     * Builders are not thread safe, but can be used on any thread.
+     */
+    public static final class Builder {
+        private int backColor = Color.TRANSPARENT;
+        private int backColorPressed = Color.TRANSPARENT;
+        private int backColorDisabled = Color.TRANSPARENT;
+        private int stroke = 0;
+        private int strokeColor = Color.GRAY;
+        private int strokeColorPressed = Color.GRAY;
+        private int strokeColorDisabled = Color.GRAY;
+        private int radius = 0;
+        private int radiusBottomLeft = -1;
+        private int radiusBottomRight = -1;
+        private int radiusTopLeft = -1;
+        private int radiusTopRight = -1;
+        private float maskBrightnessThreshold = 0;
+        private int maskColorPressed = DEFAULT_MASK_COLOR_PRESSED;
+        private int maskColorPressedInverse = DEFAULT_MASK_COLOR_PRESSED_INVERSE;
+        private int maskColorDisabled = DEFAULT_MASK_COLOR_DISABLED;
+        private boolean rippleEffect = true;
+        private boolean rippleUseControlHighlight = true;
+        private boolean statePressed = true;
+        private boolean stateDisabled = true;
+        private boolean shapeEqualWidthHeight = false;
+        private boolean shapeRadiusHalfHeight = false;
+        private boolean rasterize = false;
+        private int shadowX = 0;
+        private int shadowY = 0;
+        private int shadowColor = Color.GRAY;
+        private int shadowMode = SHADOW_MODE_PATH;
+
+        public Builder() {
+        }
+
+        public Builder(ShapeSpec spec) {
+            backColor = spec.backColor;
+            backColorPressed = spec.backColorPressed;
+            backColorDisabled = spec.backColorDisabled;
+            stroke = spec.stroke;
+            strokeColor = spec.strokeColor;
+            strokeColorPressed = spec.strokeColorPressed;
+            strokeColorDisabled = spec.strokeColorDisabled;
+            radius = spec.radius;
+            radiusBottomLeft = spec.radiusBottomLeft;
+            radiusBottomRight = spec.radiusBottomRight;
+            radiusTopLeft = spec.radiusTopLeft;
+            radiusTopRight = spec.radiusTopRight;
+            maskBrightnessThreshold = spec.maskBrightnessThreshold;
+            maskColorPressed = spec.maskColorPressed;
+            maskColorPressedInverse = spec.maskColorPressedInverse;
+            maskColorDisabled = spec.maskColorDisabled;
+            rippleEffect = spec.rippleEffect;
+            rippleUseControlHighlight = spec.rippleUseControlHighlight;
+            statePressed = spec.statePressed;
+            stateDisabled = spec.stateDisabled;
+            shapeEqualWidthHeight = spec.shapeEqualWidthHeight;
+            shapeRadiusHalfHeight = spec.shapeRadiusHalfHeight;
+            rasterize = spec.rasterize;
+            shadowX = spec.shadowX;
+            shadowY = spec.shadowY;
+            shadowColor = spec.shadowColor;
+            shadowMode = spec.shadowMode;
+        }
+
+        public Builder backColor(@ColorInt int backColor) {
+            this.backColor = backColor;
+            return this;
+        }
+
+        public Builder backColorPressed(@ColorInt int backColorPressed) {
+            this.backColorPressed = backColorPressed;
+            return this;
+        }
+
+        public Builder backColorDisabled(@ColorInt int backColorDisabled) {
+            this.backColorDisabled = backColorDisabled;
+            return this;
+        }
+
+        public Builder stroke(int stroke) {
+            this.stroke = stroke;
+            return this;
+        }
+
+        public Builder strokeColor(@ColorInt int strokeColor) {
+            this.strokeColor = strokeColor;
+            return this;
+        }
+
+        public Builder strokeColorPressed(@ColorInt int strokeColorPressed) {
+            this.strokeColorPressed = strokeColorPressed;
+            return this;
+        }
+
+        public Builder strokeColorDisabled(@ColorInt int strokeColorDisabled) {
+            this.strokeColorDisabled = strokeColorDisabled;
+            return this;
+        }
+
+        public Builder radius(int radius) {
+            this.radius = radius;
+            return this;
+        }
+
+        public Builder radiusBottomLeft(int radiusBottomLeft) {
+            this.radiusBottomLeft = radiusBottomLeft;
+            return this;
+        }
+
+        public Builder radiusBottomRight(int radiusBottomRight) {
+            this.radiusBottomRight = radiusBottomRight;
+            return this;
+        }
+
+        public Builder radiusTopLeft(int radiusTopLeft) {
+            this.radiusTopLeft = radiusTopLeft;
+            return this;
+        }
+
+        public Builder radiusTopRight(int radiusTopRight) {
+            this.radiusTopRight = radiusTopRight;
+            return this;
+        }
+
+        public Builder maskBrightnessThreshold(float maskBrightnessThreshold) {
+            this.maskBrightnessThreshold = maskBrightnessThreshold;
+            return this;
+        }
+
+        public Builder maskColorPressed(@ColorInt int maskColorPressed) {
+            this.maskColorPressed = maskColorPressed;
+            return this;
+        }
+
+        public Builder maskColorPressedInverse(@ColorInt int maskColorPressedInverse) {
+            this.maskColorPressedInverse = maskColorPressedInverse;
+            return this;
+        }
+
+        public Builder maskColorDisabled(@ColorInt int maskColorDisabled) {
+            this.maskColorDisabled = maskColorDisabled;
+            return this;
+        }
+
+        public Builder rippleEffect(boolean rippleEffect) {
+            this.rippleEffect = rippleEffect;
+            return this;
+        }
+
+        public Builder rippleUseControlHighlight(boolean rippleUseControlHighlight) {
+            this.rippleUseControlHighlight = rippleUseControlHighlight;
+            return this;
+        }
+
+        public Builder statePressed(boolean statePressed) {
+            this.statePressed = statePressed;
+            return this;
+        }
+
+        public Builder stateDisabled(boolean stateDisabled) {
+            this.stateDisabled = stateDisabled;
+            return this;
+        }
+
+        public Builder shapeEqualWidthHeight(boolean shapeEqualWidthHeight) {
+            this.shapeEqualWidthHeight = shapeEqualWidthHeight;
+            return this;
+        }
+
+        public Builder shapeRadiusHalfHeight(boolean shapeRadiusHalfHeight) {
+            this.shapeRadiusHalfHeight = shapeRadiusHalfHeight;
+            return this;
+        }
+
+        public Builder rasterize(boolean rasterize) {
+            this.rasterize = rasterize;
+            return this;
+        }
+
+        public Builder shadowX(int shadowX) {
+            this.shadowX = shadowX;
+            return this;
+        }
+
+        public Builder shadowY(int shadowY) {
+            this.shadowY = shadowY;
+            return this;
+        }
+
+        public Builder shadowColor(@ColorInt int shadowColor) {
+            this.shadowColor = shadowColor;
+            return this;
+        }
+
+        public Builder shadowMode(int shadowMode) {
+            this.shadowMode = shadowMode;
+            return this;
+        }
+
+        /**
+         * @return Interned spec, safe to call from any thread.
+         */
+        public ShapeSpec build() {
+            return intern(new ShapeSpec(this));
+        }
+    }
+}
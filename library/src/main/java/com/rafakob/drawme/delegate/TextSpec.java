@@ -0,0 +1,164 @@
+package com.rafakob.drawme.delegate;
+
+import android.graphics.Color;
+import android.support.annotation.ColorInt;
+import android.text.TextUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable set of text attributes, interned the same way as {@link ShapeSpec}.
+ */
+public final class TextSpec {
+    private static final WeakHashMap<TextSpec, WeakReference<TextSpec>> pool = new WeakHashMap<>();
+
+    private final String font;
+    private final int textColor;
+    private final int textColorPressed;
+    private final int textColorDisabled;
+    private final int tintColor;
+    private final int tintMode;
+
+    private final int hash;
+
+    private TextSpec(Builder b) {
+        font = b.font;
+        textColor = b.textColor;
+        textColorPressed = b.textColorPressed;
+        textColorDisabled = b.textColorDisabled;
+        tintColor = b.tintColor;
+        tintMode = b.tintMode;
+        hash = computeHash();
+    }
+
+    private int computeHash() {
+        int h = font == null ? 0 : font.hashCode();
+        h = 31 * h + textColor;
+        h = 31 * h + textColorPressed;
+        h = 31 * h + textColorDisabled;
+        h = 31 * h + tintColor;
+        h = 31 * h + tintMode;
+        return h;
+    }
+
+    private static TextSpec intern(TextSpec spec) {
+        synchronized (pool) {
+            WeakReference<TextSpec> ref = pool.get(spec);
+            TextSpec interned = ref == null ? null : ref.get();
+            if (interned == null) {
+                pool.put(spec, new WeakReference<>(spec));
+                interned = spec;
+            }
+            return interned;
+        }
+    }
+
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TextSpec)) return false;
+        TextSpec s = (TextSpec) o;
+        return hash == s.hash
+                && textColor == s.textColor
+                && textColorPressed == s.textColorPressed
+                && textColorDisabled == s.textColorDisabled
+                && tintColor == s.tintColor
+                && tintMode == s.tintMode
+                && TextUtils.equals(font, s.font);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    public String getFont() {
+        return font;
+    }
+
+    public int getTextColor() {
+        return textColor;
+    }
+
+    public int getTextColorPressed() {
+        return textColorPressed;
+    }
+
+    public int getTextColorDisabled() {
+        return textColorDisabled;
+    }
+
+    public int getTintColor() {
+        return tintColor;
+    }
+
+    public int getTintMode() {
+        return tintMode;
+    }
+
+    /**
+     * Builder of {@link TextSpec}. Builders are not thread safe, but can be used on any thread.
+     */
+    public static final class Builder {
+        private String font;
+        private int textColor = Color.BLACK;
+        private int textColorPressed = Color.BLACK;
+        private int textColorDisabled = Color.BLACK;
+        private int tintColor = 0;
+        private int tintMode = 0;
+
+        public Builder() {
+        }
+
+        public Builder(TextSpec spec) {
+            font = spec.font;
+            textColor = spec.textColor;
+            textColorPressed = spec.textColorPressed;
+            textColorDisabled = spec.textColorDisabled;
+            tintColor = spec.tintColor;
+            tintMode = spec.tintMode;
+        }
+
+        public Builder font(String font) {
+            this.font = font;
+            return this;
+        }
+
+        public Builder textColor(@ColorInt int textColor) {
+            this.textColor = textColor;
+            return this;
+        }
+
+        public Builder textColorPressed(@ColorInt int textColorPressed) {
+            this.textColorPressed = textColorPressed;
+            return this;
+        }
+
+        public Builder textColorDisabled(@ColorInt int textColorDisabled) {
+            this.textColorDisabled = textColorDisabled;
+            return this;
+        }
+
+        public Builder tintColor(@ColorInt int tintColor) {
+            this.tintColor = tintColor;
+            return this;
+        }
+
+        public Builder tintMode(int tintMode) {
+            this.tintMode = tintMode;
+            return this;
+        }
+
+        /**
+         * @return Interned spec, safe to call from any thread.
+         */
+        public TextSpec build() {
+            return intern(new TextSpec(this));
+        }
+    }
+}
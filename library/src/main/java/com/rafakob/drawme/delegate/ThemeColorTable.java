@@ -0,0 +1,114 @@
+package com.rafakob.drawme.delegate;
+
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Build;
+import android.support.annotation.ColorInt;
+
+import com.rafakob.drawme.R;
+import com.rafakob.drawme.util.Coloring;
+import com.rafakob.drawme.util.DrawMeMetrics;
+import com.rafakob.drawme.util.TintCache;
+
+import java.util.WeakHashMap;
+
+/**
+ * Theme dependent default colors, resolved once per {@link Resources.Theme}.
+ * Tables (and {@link AttributeCache} which holds colors derived from them) are dropped on configuration change,
+ * together with {@link TintCache} as tinted drawables depend on configuration too.
+ */
+public final class ThemeColorTable {
+    private static final WeakHashMap<Resources.Theme, ThemeColorTable> tables = new WeakHashMap<>();
+    private static boolean callbacksRegistered;
+
+    private final int controlHighlight;
+
+    private ThemeColorTable(Context context) {
+        controlHighlight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                ? Coloring.getThemeColor(context, R.attr.colorControlHighlight)
+                : 0;
+    }
+
+    public static ThemeColorTable get(Context context) {
+        Resources.Theme theme = context.getTheme();
+        synchronized (tables) {
+            ThemeColorTable table = tables.get(theme);
+            if (table == null) {
+                table = new ThemeColorTable(context);
+                DrawMeMetrics.onThemeResolved();
+                tables.put(theme, table);
+                registerCallbacks(context);
+            }
+            return table;
+        }
+    }
+
+    private static void registerCallbacks(Context context) {
+        if (callbacksRegistered || Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            return;
+        }
+        Context app = context.getApplicationContext();
+        if (app == null) {
+            return;
+        }
+        callbacksRegistered = true;
+        app.registerComponentCallbacks(new ComponentCallbacks() {
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                clear();
+            }
+
+            @Override
+            public void onLowMemory() {
+            }
+        });
+    }
+
+    /**
+     * Drops all tables and resolved attributes, next widgets will resolve them again.
+     */
+    public static void clear() {
+        synchronized (tables) {
+            tables.clear();
+        }
+        AttributeCache.clear();
+        TintCache.clear();
+    }
+
+    /**
+     * @return Theme attribute colorControlHighlight, 0 below Lollipop.
+     */
+    @ColorInt
+    public int getControlHighlight() {
+        return controlHighlight;
+    }
+
+    /**
+     * Calculates default color value for pressed color.
+     * On PreL mixes normal state color with a "shadow mask", on L uses theme attribute colorControlHighlight.
+     */
+    @ColorInt
+    public int pressedColor(int normalColor, float maskBrightnessThreshold, int maskColorPressed,
+                            int maskColorPressedInverse, boolean rippleUseControlHighlight) {
+        if (maskBrightnessThreshold > 0 && Coloring.getColorBrightness(normalColor) < maskBrightnessThreshold) {
+            return Coloring.mix(maskColorPressedInverse, normalColor);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && rippleUseControlHighlight) {
+            return controlHighlight;
+        } else {
+            return Coloring.mix(maskColorPressed, normalColor);
+        }
+    }
+
+    /**
+     * Calculates default color value for disabled color.
+     * Mixes state color with a "lighter mask".
+     */
+    @ColorInt
+    public int disabledColor(int normalColor, int maskColorDisabled) {
+        return Coloring.mix(maskColorDisabled, normalColor);
+    }
+}
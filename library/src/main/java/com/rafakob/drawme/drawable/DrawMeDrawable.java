@@ -0,0 +1,436 @@
+package com.rafakob.drawme.drawable;
+
+import android.annotation.TargetApi;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.util.DrawMeExecutor;
+
+import java.util.concurrent.Future;
+
+/**
+ * Single drawable which renders the whole {@link ShapeSpec}: fill, stroke, corner radii and 2D shadow.
+ * Replaces a StateListDrawable of GradientDrawables (wrapped in LayerDrawables when there is a shadow) -
+ * state changes only swap paint colors, geometry is rebuilt only when bounds change.
+ * In {@link ShapeSpec#SHADOW_MODE_ELEVATION} shadow is left to the view elevation on Lollipop
+ * and drawn from a shared cached bitmap below. The bitmap is rasterized on a background thread when bounds
+ * or spec change, until it's ready the shadow is drawn as a path.
+ */
+public class DrawMeDrawable extends Drawable {
+    private DrawMeState state;
+    private boolean mutated;
+
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint shadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Path path = new Path();
+    private final Path shadowPath = new Path();
+    private final RectF rect = new RectF();
+    private final float[] radii = new float[8];
+    private boolean pathDirty = true;
+
+    private int fillColor;
+    private int strokeColor;
+    private int alpha = 255;
+
+    /* Cached shadow used by SHADOW_MODE_ELEVATION before Lollipop, null until shadowKey is rasterized */
+    private ShapeBitmapCache.Key shadowKey;
+    private Bitmap shadowBitmap;
+    private ShadowTask shadowTask;
+
+    public DrawMeDrawable(ShapeSpec spec) {
+        this(new DrawMeState(spec));
+    }
+
+    private DrawMeDrawable(DrawMeState state) {
+        this.state = state;
+        strokePaint.setStyle(Paint.Style.STROKE);
+        fillColor = state.spec.getBackColor();
+        strokeColor = state.spec.getStrokeColor();
+    }
+
+    public ShapeSpec getSpec() {
+        return state.spec;
+    }
+
+    /**
+     * Changes colors of this drawable in place, the drawable is mutated first.
+     *
+     * @param spec Spec with the same geometry as the current one, see {@link ShapeSpec#hasSameGeometry(ShapeSpec)}.
+     */
+    public void setSpec(ShapeSpec spec) {
+        mutate();
+        state.spec = spec;
+        prepareShadowBitmap();
+        fillColor = spec.getBackColor();
+        strokeColor = spec.getStrokeColor();
+        onStateChange(getState());
+        invalidateSelf();
+    }
+
+    /**
+     * @return Fill color for the current state.
+     */
+    int getFillColor() {
+        return fillColor;
+    }
+
+    /**
+     * @return Stroke color for the current state.
+     */
+    int getStrokeColor() {
+        return strokeColor;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        ensurePath();
+        ShapeSpec spec = state.spec;
+
+        if (spec.hasShadow()) {
+            if (spec.getShadowMode() == ShapeSpec.SHADOW_MODE_PATH) {
+                drawShadowPath(canvas);
+            } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+                if (shadowBitmap != null) {
+                    bitmapPaint.setAlpha(alpha);
+                    canvas.drawBitmap(shadowBitmap, getBounds().left, getBounds().top, bitmapPaint);
+                } else {
+                    drawShadowPath(canvas);
+                }
+            }
+            // else shadow is cast by the view elevation using outline of this drawable
+        }
+        if (setPaintColor(fillPaint, fillColor)) {
+            canvas.drawPath(path, fillPaint);
+        }
+        if (spec.getStroke() > 0 && setPaintColor(strokePaint, strokeColor)) {
+            strokePaint.setStrokeWidth(spec.getStroke());
+            canvas.drawPath(path, strokePaint);
+        }
+    }
+
+    private void drawShadowPath(Canvas canvas) {
+        if (setPaintColor(shadowPaint, state.spec.getShadowColor())) {
+            canvas.drawPath(shadowPath, shadowPaint);
+        }
+    }
+
+    /**
+     * Looks up the shadow bitmap for current bounds in {@link ShapeBitmapCache}. On a miss the shadow is rasterized
+     * on a background thread, once per (radii, offset, color, size), and shared by all drawables.
+     */
+    private void prepareShadowBitmap() {
+        ShapeSpec spec = state.spec;
+        Rect bounds = getBounds();
+        int width = bounds.width();
+        int height = bounds.height();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP || !spec.hasShadow()
+                || spec.getShadowMode() != ShapeSpec.SHADOW_MODE_ELEVATION || !ShapeBitmapCache.fits(width, height)) {
+            cancelShadowTask();
+            shadowKey = null;
+            shadowBitmap = null;
+            return;
+        }
+
+        ShapeSpec shadowSpec = getShadowSpec(spec);
+        int color = spec.getShadowColor();
+        if (shadowKey != null && shadowKey.matches(shadowSpec, width, height, color, 0)) {
+            return;
+        }
+        cancelShadowTask();
+        shadowKey = new ShapeBitmapCache.Key(shadowSpec, width, height, color, 0);
+        shadowBitmap = ShapeBitmapCache.get(shadowKey);
+        if (shadowBitmap == null) {
+            shadowTask = new ShadowTask(shadowKey);
+            shadowTask.start();
+        }
+    }
+
+    private void cancelShadowTask() {
+        if (shadowTask != null) {
+            shadowTask.cancel();
+            shadowTask = null;
+        }
+    }
+
+    /**
+     * Sets rect of the shadow for given bounds, it's the shape shifted by the shadow offset.
+     */
+    private static void setShadowRect(RectF rect, ShapeSpec spec, int left, int top, int right, int bottom) {
+        int shadowX = spec.getShadowX();
+        int shadowY = spec.getShadowY();
+        rect.set(left + (shadowX > 0 ? shadowX : 0), top + (shadowY > 0 ? shadowY : 0),
+                right - (shadowX < 0 ? -shadowX : 0), bottom - (shadowY < 0 ? -shadowY : 0));
+    }
+
+    /**
+     * @return Spec with only the attributes which shape the shadow, so shapes with different colors share it.
+     */
+    private static ShapeSpec getShadowSpec(ShapeSpec spec) {
+        return new ShapeSpec.Builder()
+                .radius(spec.getRadius())
+                .radiusBottomLeft(spec.getRadiusBottomLeft())
+                .radiusBottomRight(spec.getRadiusBottomRight())
+                .radiusTopLeft(spec.getRadiusTopLeft())
+                .radiusTopRight(spec.getRadiusTopRight())
+                .shadowX(spec.getShadowX())
+                .shadowY(spec.getShadowY())
+                .shadowColor(spec.getShadowColor())
+                .shadowMode(spec.getShadowMode())
+                .build();
+    }
+
+    /**
+     * @return False if there is nothing to draw with this paint.
+     */
+    private boolean setPaintColor(Paint paint, int color) {
+        int colorAlpha = Color.alpha(color) * (alpha + (alpha >> 7)) >> 8;
+        if (colorAlpha == 0) {
+            return false;
+        }
+        paint.setColor(color);
+        paint.setAlpha(colorAlpha);
+        return true;
+    }
+
+    /**
+     * Rebuilds shape and shadow paths. Layout matches the previous GradientDrawable/LayerDrawable tree:
+     * shadow and shape are shifted against each other by the shadow offset and stroke is drawn
+     * on a rectangle inset by half of its width.
+     */
+    private void ensurePath() {
+        if (!pathDirty) {
+            return;
+        }
+        pathDirty = false;
+        ShapeSpec spec = state.spec;
+        Rect bounds = getBounds();
+        spec.getCornerRadii(radii);
+
+        int shadowX = spec.getShadowX();
+        int shadowY = spec.getShadowY();
+        int l = shadowX > 0 ? shadowX : 0;
+        int t = shadowY > 0 ? shadowY : 0;
+        int r = shadowX < 0 ? -shadowX : 0;
+        int b = shadowY < 0 ? -shadowY : 0;
+
+        shadowPath.reset();
+        if (spec.hasShadow()) {
+            setShadowRect(rect, spec, bounds.left, bounds.top, bounds.right, bounds.bottom);
+            shadowPath.addRoundRect(rect, radii, Path.Direction.CW);
+        }
+
+        float inset = spec.getStroke() > 0 ? spec.getStroke() * 0.5f : 0;
+        rect.set(bounds.left + r + inset, bounds.top + b + inset, bounds.right - l - inset, bounds.bottom - t - inset);
+        path.reset();
+        path.addRoundRect(rect, radii, Path.Direction.CW);
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        pathDirty = true;
+        prepareShadowBitmap();
+    }
+
+    @Override
+    public boolean isStateful() {
+        // has to follow state flags only, not colors - rebind can switch to a spec with distinct state colors
+        // and a drawable which didn't report itself as stateful never gets a state from its view
+        return state.spec.isStatePressed() || state.spec.isStateDisabled();
+    }
+
+    @Override
+    protected boolean onStateChange(int[] stateSet) {
+        boolean enabled = false;
+        boolean pressed = false;
+        for (int s : stateSet) {
+            if (s == android.R.attr.state_enabled) {
+                enabled = true;
+            } else if (s == android.R.attr.state_pressed) {
+                pressed = true;
+            }
+        }
+
+        ShapeSpec spec = state.spec;
+        int newFill;
+        int newStroke;
+        if (spec.isStateDisabled() && !enabled) {
+            newFill = spec.getBackColorDisabled();
+            newStroke = spec.getStrokeColorDisabled();
+        } else if (spec.isStatePressed() && pressed) {
+            newFill = spec.getBackColorPressed();
+            newStroke = spec.getStrokeColorPressed();
+        } else {
+            newFill = spec.getBackColor();
+            newStroke = spec.getStrokeColor();
+        }
+
+        if (newFill != fillColor || newStroke != strokeColor) {
+            fillColor = newFill;
+            strokeColor = newStroke;
+            invalidateSelf();
+            return true;
+        }
+        return false;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void getOutline(@NonNull Outline outline) {
+        ensurePath();
+        outline.setConvexPath(path);
+        outline.setAlpha(Color.alpha(fillColor) / 255f * alpha / 255f);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (this.alpha != alpha) {
+            this.alpha = alpha;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        fillPaint.setColorFilter(colorFilter);
+        strokePaint.setColorFilter(colorFilter);
+        shadowPaint.setColorFilter(colorFilter);
+        bitmapPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public int getChangingConfigurations() {
+        return super.getChangingConfigurations() | state.changingConfigurations;
+    }
+
+    @Override
+    public Drawable mutate() {
+        if (!mutated && super.mutate() == this) {
+            state = new DrawMeState(state);
+            mutated = true;
+        }
+        return this;
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        state.changingConfigurations = getChangingConfigurations();
+        return state;
+    }
+
+    /**
+     * Rasterizes a shadow into {@link ShapeBitmapCache} on a background thread
+     * and hands it to this drawable if it still wants the same one.
+     */
+    private final class ShadowTask implements Runnable {
+        private final ShapeBitmapCache.Key key;
+        private volatile boolean cancelled;
+        private Future<?> future;
+        private Bitmap result;
+
+        private final Runnable install = new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled && shadowTask == ShadowTask.this) {
+                    shadowTask = null;
+                    shadowBitmap = result;
+                    invalidateSelf();
+                }
+            }
+        };
+
+        ShadowTask(ShapeBitmapCache.Key key) {
+            this.key = key;
+        }
+
+        void start() {
+            future = DrawMeExecutor.submit(this);
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            DrawMeExecutor.removeFromMain(install);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            RectF shadowRect = new RectF();
+            float[] shadowRadii = new float[8];
+            setShadowRect(shadowRect, key.spec, 0, 0, key.width, key.height);
+            key.spec.getCornerRadii(shadowRadii);
+            Path shadow = new Path();
+            shadow.addRoundRect(shadowRect, shadowRadii, Path.Direction.CW);
+            // own paint, color filter of the drawable can't end up in a shared bitmap
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setColor(key.spec.getShadowColor());
+
+            result = Bitmap.createBitmap(key.width, key.height, Bitmap.Config.ARGB_8888);
+            new Canvas(result).drawPath(shadow, paint);
+            ShapeBitmapCache.put(key, result);
+            DrawMeExecutor.postToMain(install);
+        }
+    }
+
+    static final class DrawMeState extends ConstantState {
+        ShapeSpec spec;
+        int changingConfigurations;
+
+        DrawMeState(ShapeSpec spec) {
+            this.spec = spec;
+        }
+
+        DrawMeState(DrawMeState orig) {
+            this.spec = orig.spec;
+            this.changingConfigurations = orig.changingConfigurations;
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return new DrawMeDrawable(this);
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable(Resources res) {
+            return new DrawMeDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return changingConfigurations;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.rafakob.drawme.drawable;
+
+import android.annotation.TargetApi;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.util.DrawMeExecutor;
+
+import java.util.concurrent.Future;
+
+/**
+ * Bitmap backed variant of {@link DrawMeDrawable} for shapes which never change, eg. badges and pills.
+ * Every (spec, size, state colors) combination is rasterized once into {@link ShapeBitmapCache}
+ * and then only blitted, so all views with the same background share a single bitmap.
+ * Bitmaps of all states of the spec are rasterized on a background thread when bounds or spec change,
+ * until they are ready the shape is drawn as a vector.
+ */
+public class RasterShapeDrawable extends Drawable {
+    /* States with distinct colors, rasterized ahead of time: normal, pressed and disabled */
+    private static final int[] STATE_NORMAL = {android.R.attr.state_enabled};
+    private static final int[] STATE_PRESSED = {android.R.attr.state_enabled, android.R.attr.state_pressed};
+    private static final int[] STATE_DISABLED = {};
+
+    private RasterState state;
+    private boolean mutated;
+
+    /* Draws the shape as a vector until its bitmap is ready, provides colors of the current state */
+    private final DrawMeDrawable shape;
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /* Lookup key reused by every draw, describes bitmap when it's not null */
+    private final ShapeBitmapCache.Key probe = new ShapeBitmapCache.Key();
+    private Bitmap bitmap;
+    private RasterTask rasterTask;
+    private int alpha = 255;
+
+    public RasterShapeDrawable(ShapeSpec spec) {
+        this(new RasterState(spec));
+    }
+
+    private RasterShapeDrawable(RasterState state) {
+        this.state = state;
+        this.shape = new DrawMeDrawable(state.spec);
+    }
+
+    public ShapeSpec getSpec() {
+        return state.spec;
+    }
+
+    /**
+     * Changes colors of this drawable in place, the drawable is mutated first.
+     *
+     * @param spec Spec with the same geometry as the current one, see {@link ShapeSpec#hasSameGeometry(ShapeSpec)}.
+     */
+    public void setSpec(ShapeSpec spec) {
+        mutate();
+        state.spec = spec;
+        shape.setSpec(spec);
+        prepareBitmaps();
+        invalidateSelf();
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        Rect bounds = getBounds();
+        int width = bounds.width();
+        int height = bounds.height();
+        if (!ShapeBitmapCache.fits(width, height)) {
+            shape.draw(canvas);
+            return;
+        }
+
+        int fillColor = shape.getFillColor();
+        int strokeColor = shape.getStrokeColor();
+        if (bitmap == null || !probe.matches(state.spec, width, height, fillColor, strokeColor)) {
+            probe.set(state.spec, width, height, fillColor, strokeColor);
+            bitmap = rasterTask == null ? ShapeBitmapCache.get(probe) : null;
+            if (bitmap == null && rasterTask == null) {
+                // evicted since it has been rasterized
+                startRasterTask();
+            }
+        }
+
+        if (bitmap == null) {
+            shape.draw(canvas);
+        } else {
+            bitmapPaint.setAlpha(alpha);
+            canvas.drawBitmap(bitmap, bounds.left, bounds.top, bitmapPaint);
+        }
+    }
+
+    /**
+     * Rasterizes bitmaps of all states for current spec and bounds, unless they don't fit the cache.
+     */
+    private void prepareBitmaps() {
+        cancelRasterTask();
+        bitmap = null;
+        Rect bounds = getBounds();
+        if (ShapeBitmapCache.fits(bounds.width(), bounds.height())) {
+            startRasterTask();
+        }
+    }
+
+    private void startRasterTask() {
+        Rect bounds = getBounds();
+        rasterTask = new RasterTask(state.spec, bounds.width(), bounds.height());
+        rasterTask.start();
+    }
+
+    private void cancelRasterTask() {
+        if (rasterTask != null) {
+            rasterTask.cancel();
+            rasterTask = null;
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        shape.setBounds(bounds);
+        prepareBitmaps();
+    }
+
+    @Override
+    public boolean isStateful() {
+        return shape.isStateful();
+    }
+
+    @Override
+    protected boolean onStateChange(int[] stateSet) {
+        if (shape.setState(stateSet)) {
+            invalidateSelf();
+            return true;
+        }
+        return false;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void getOutline(@NonNull Outline outline) {
+        shape.getOutline(outline);
+        outline.setAlpha(outline.getAlpha() * alpha / 255f);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (this.alpha != alpha) {
+            this.alpha = alpha;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        bitmapPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public int getChangingConfigurations() {
+        return super.getChangingConfigurations() | state.changingConfigurations;
+    }
+
+    @Override
+    public Drawable mutate() {
+        if (!mutated && super.mutate() == this) {
+            state = new RasterState(state);
+            mutated = true;
+        }
+        return this;
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        state.changingConfigurations = getChangingConfigurations();
+        return state;
+    }
+
+    /**
+     * Rasterizes bitmaps of all states of a spec into {@link ShapeBitmapCache} on a background thread
+     * and lets this drawable blit them if it still wants the same spec and size.
+     */
+    private final class RasterTask implements Runnable {
+        private final ShapeSpec spec;
+        private final int width;
+        private final int height;
+        private volatile boolean cancelled;
+        private Future<?> future;
+
+        private final Runnable install = new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled && rasterTask == RasterTask.this) {
+                    rasterTask = null;
+                    invalidateSelf();
+                }
+            }
+        };
+
+        RasterTask(ShapeSpec spec, int width, int height) {
+            this.spec = spec;
+            this.width = width;
+            this.height = height;
+        }
+
+        void start() {
+            future = DrawMeExecutor.submit(this);
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            DrawMeExecutor.removeFromMain(install);
+        }
+
+        @Override
+        public void run() {
+            // own drawable, the shape is used by the main thread meanwhile
+            DrawMeDrawable painter = new DrawMeDrawable(spec);
+            painter.setBounds(0, 0, width, height);
+            rasterize(painter, STATE_NORMAL);
+            if (spec.isStatePressed()) {
+                rasterize(painter, STATE_PRESSED);
+            }
+            if (spec.isStateDisabled()) {
+                rasterize(painter, STATE_DISABLED);
+            }
+            if (!cancelled) {
+                DrawMeExecutor.postToMain(install);
+            }
+        }
+
+        private void rasterize(DrawMeDrawable painter, int[] stateSet) {
+            if (cancelled) {
+                return;
+            }
+            painter.setState(stateSet);
+            ShapeBitmapCache.Key key = new ShapeBitmapCache.Key(spec, width, height,
+                    painter.getFillColor(), painter.getStrokeColor());
+            if (ShapeBitmapCache.get(key) == null) {
+                Bitmap result = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                painter.draw(new Canvas(result));
+                ShapeBitmapCache.put(key, result);
+            }
+        }
+    }
+
+    static final class RasterState extends ConstantState {
+        ShapeSpec spec;
+        int changingConfigurations;
+
+        RasterState(ShapeSpec spec) {
+            this.spec = spec;
+        }
+
+        RasterState(RasterState orig) {
+            this.spec = orig.spec;
+            this.changingConfigurations = orig.changingConfigurations;
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return new RasterShapeDrawable(this);
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable(Resources res) {
+            return new RasterShapeDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return changingConfigurations;
+        }
+    }
+}
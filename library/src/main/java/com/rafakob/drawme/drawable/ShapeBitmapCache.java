@@ -0,0 +1,131 @@
+package com.rafakob.drawme.drawable;
+
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+
+import com.rafakob.drawme.delegate.ShapeSpec;
+
+/**
+ * Process-wide pool of rasterized shapes, shared by all {@link RasterShapeDrawable}s.
+ * Each entry holds one (spec, width, height, fill color, stroke color) combination, so identical
+ * backgrounds of many views are rendered once and then only blitted. Size is limited by a byte budget.
+ */
+public class ShapeBitmapCache {
+    public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static volatile LruCache<Key, Bitmap> cache = newCache(DEFAULT_MAX_BYTES);
+
+    private static LruCache<Key, Bitmap> newCache(int maxBytes) {
+        return new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return byteCount(value.getWidth(), value.getHeight());
+            }
+        };
+    }
+
+    static int byteCount(int width, int height) {
+        return width * height * 4;
+    }
+
+    /**
+     * @return True if a bitmap of a given size can be cached at all. Bigger shapes are drawn directly.
+     */
+    static boolean fits(int width, int height) {
+        return width > 0 && height > 0 && byteCount(width, height) <= cache.maxSize() / 4;
+    }
+
+    static Bitmap get(Key key) {
+        return cache.get(key);
+    }
+
+    static void put(Key key, Bitmap bitmap) {
+        cache.put(key, bitmap);
+    }
+
+    /**
+     * Changes byte budget of the pool. Current entries are dropped.
+     *
+     * @param maxBytes Max total size of cached bitmaps.
+     */
+    public static void setMaxBytes(int maxBytes) {
+        cache = newCache(maxBytes);
+    }
+
+    public static int getMaxBytes() {
+        return cache.maxSize();
+    }
+
+    /**
+     * @return Total size of cached bitmaps in bytes.
+     */
+    public static int getSize() {
+        return cache.size();
+    }
+
+    public static int getHitCount() {
+        return cache.hitCount();
+    }
+
+    public static int getMissCount() {
+        return cache.missCount();
+    }
+
+    public static int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    public static void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * Cache key. A key which has been put into the cache must never change, a key used only for lookups
+     * can be reused through {@link #set(ShapeSpec, int, int, int, int)}, so a lookup doesn't allocate.
+     */
+    static final class Key {
+        ShapeSpec spec;
+        int width;
+        int height;
+        int fillColor;
+        int strokeColor;
+
+        Key() {
+        }
+
+        Key(ShapeSpec spec, int width, int height, int fillColor, int strokeColor) {
+            set(spec, width, height, fillColor, strokeColor);
+        }
+
+        void set(ShapeSpec spec, int width, int height, int fillColor, int strokeColor) {
+            this.spec = spec;
+            this.width = width;
+            this.height = height;
+            this.fillColor = fillColor;
+            this.strokeColor = strokeColor;
+        }
+
+        boolean matches(ShapeSpec spec, int width, int height, int fillColor, int strokeColor) {
+            return this.spec == spec && this.width == width && this.height == height
+                    && this.fillColor == fillColor && this.strokeColor == strokeColor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return k.matches(spec, width, height, fillColor, strokeColor);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = spec.hashCode();
+            h = 31 * h + width;
+            h = 31 * h + height;
+            h = 31 * h + fillColor;
+            h = 31 * h + strokeColor;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.rafakob.drawme.util;
+
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide LRU cache of background drawable states.
+ * Views with an identical shape spec share one {@link Drawable.ConstantState}, so only the first one pays
+ * for building the drawable tree - the rest get a cheap {@link Drawable.ConstantState#newDrawable(Resources)} copy.
+ */
+public class BackgroundCache {
+    public static final int DEFAULT_MAX_SIZE = 128;
+
+    private static volatile LruCache<Object, Drawable.ConstantState> cache = new LruCache<>(DEFAULT_MAX_SIZE);
+    /* Counted only by get(), so probes through contains() don't skew them */
+    private static final AtomicInteger hitCount = new AtomicInteger();
+    private static final AtomicInteger missCount = new AtomicInteger();
+
+    /**
+     * Returns a new drawable backed by the cached state for a given key.
+     *
+     * @param key       Full shape spec, it has to implement equals() and hashCode().
+     * @param resources Resources passed to the new drawable.
+     * @return Drawable or null if there is no state cached for this key.
+     */
+    public static Drawable get(Object key, Resources resources) {
+        Drawable.ConstantState state = cache.get(key);
+        if (state == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return state.newDrawable(resources);
+    }
+
+    /**
+     * Checks the cache without counting a hit or a miss.
+     *
+     * @param key Full shape spec, it has to implement equals() and hashCode().
+     * @return True if there is a state cached for this key.
+     */
+    public static boolean contains(Object key) {
+        return cache.get(key) != null;
+    }
+
+    /**
+     * Caches state of a given drawable. Drawables which don't provide a constant state are ignored.
+     *
+     * @param key      Full shape spec, it has to implement equals() and hashCode().
+     * @param drawable Freshly created drawable.
+     */
+    public static void put(Object key, Drawable drawable) {
+        Drawable.ConstantState state = drawable.getConstantState();
+        if (state != null) {
+            cache.put(key, state);
+        }
+    }
+
+    /**
+     * Changes max number of cached states. Current entries are dropped.
+     *
+     * @param maxSize Max number of entries.
+     */
+    public static void setMaxSize(int maxSize) {
+        cache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * @return Number of get() calls which returned a drawable.
+     */
+    public static int getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return Number of get() calls which found nothing.
+     */
+    public static int getMissCount() {
+        return missCount.get();
+    }
+
+    public static void clear() {
+        cache.evictAll();
+    }
+}
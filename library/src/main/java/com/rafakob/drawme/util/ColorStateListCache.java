@@ -0,0 +1,64 @@
+package com.rafakob.drawme.util;
+
+import android.content.res.ColorStateList;
+import android.support.v4.util.LruCache;
+
+/**
+ * Process-wide cache of interned color state lists, keyed by states and (normal, pressed, disabled) colors.
+ * Color state lists are immutable, so every view using the same colors can share one instance
+ * and cheaply detect that its colors haven't changed by comparing references.
+ */
+public class ColorStateListCache {
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private static final LruCache<Key, ColorStateList> cache = new LruCache<>(DEFAULT_MAX_SIZE);
+
+    /**
+     * @param states States in order: disabled, pressed, default. Has to be a constant, it's compared by reference.
+     */
+    public static ColorStateList get(int[][] states, int normalColor, int pressedColor, int disabledColor) {
+        Key key = new Key(states, normalColor, pressedColor, disabledColor);
+        ColorStateList colors = cache.get(key);
+        if (colors == null) {
+            colors = new ColorStateList(states, new int[]{disabledColor, pressedColor, normalColor});
+            cache.put(key, colors);
+        }
+        return colors;
+    }
+
+    public static void clear() {
+        cache.evictAll();
+    }
+
+    private static final class Key {
+        private final int[][] states;
+        private final int normalColor;
+        private final int pressedColor;
+        private final int disabledColor;
+
+        Key(int[][] states, int normalColor, int pressedColor, int disabledColor) {
+            this.states = states;
+            this.normalColor = normalColor;
+            this.pressedColor = pressedColor;
+            this.disabledColor = disabledColor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return states == k.states && normalColor == k.normalColor
+                    && pressedColor == k.pressedColor && disabledColor == k.disabledColor;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(states);
+            h = 31 * h + normalColor;
+            h = 31 * h + pressedColor;
+            h = 31 * h + disabledColor;
+            return h;
+        }
+    }
+}
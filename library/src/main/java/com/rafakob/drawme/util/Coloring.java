@@ -12,30 +12,116 @@ import android.support.annotation.ColorInt;
 import android.support.annotation.NonNull;
 import android.util.TypedValue;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
 public class Coloring {
+    private static final int[][] STATES = new int[][]{
+            new int[]{-android.R.attr.state_enabled,
+                    -android.R.attr.state_pressed,
+                    -android.R.attr.state_selected,
+                    -android.R.attr.state_focused},
+            new int[]{android.R.attr.state_pressed},
+            new int[]{}
+    };
+
     public static String intToHex(@ColorInt int color) {
         return String.format("#%06X", color);
     }
 
+    /* Brightness for a weighted channel average 0..255 */
+    private static final float[] BRIGHTNESS = new float[256];
+
+    static {
+        for (int i = 0; i < BRIGHTNESS.length; i++) {
+            BRIGHTNESS[i] = i / 255f;
+        }
+    }
+
+    /**
+     * Mixes two colors - A is drawn over B.
+     * Uses plain bit operations instead of {@link Color} methods, so it doesn't need Android framework to run.
+     */
     @ColorInt
     public static int mix(int A, int B) {
-        int rA = Color.red(A);
-        int gA = Color.green(A);
-        int bA = Color.blue(A);
-        int aA = Color.alpha(A);
+        int rA = (A >> 16) & 0xFF;
+        int gA = (A >> 8) & 0xFF;
+        int bA = A & 0xFF;
+        int aA = A >>> 24;
+
+        int rB = (B >> 16) & 0xFF;
+        int gB = (B >> 8) & 0xFF;
+        int bB = B & 0xFF;
+        int aB = B >>> 24;
 
-        int rB = Color.red(B);
-        int gB = Color.green(B);
-        int bB = Color.blue(B);
-        int aB = Color.alpha(B);
+        int weightB = aB * (255 - aA);
+        int rOut = div255(rA * aA) + div65025(rB * weightB);
+        int gOut = div255(gA * aA) + div65025(gB * weightB);
+        int bOut = div255(bA * aA) + div65025(bB * weightB);
+        int aOut = aA + div255(weightB);
 
+        return (aOut << 24) | (rOut << 16) | (gOut << 8) | bOut;
+    }
+
+    /**
+     * Mixes a mask color over every color of an array, same as calling {@link #mix(int, int)} for each of them.
+     *
+     * @param maskColor Color drawn over all colors.
+     * @param colors    Source colors.
+     * @param out       Result colors, at least as long as colors. Can be the same array as colors.
+     */
+    public static void mixAll(int maskColor, int[] colors, int[] out) {
+        mixAll(maskColor, colors, 0, out, 0, colors.length);
+    }
 
-        int rOut = (rA * aA / 255) + (rB * aB * (255 - aA) / (255 * 255));
-        int gOut = (gA * aA / 255) + (gB * aB * (255 - aA) / (255 * 255));
-        int bOut = (bA * aA / 255) + (bB * aB * (255 - aA) / (255 * 255));
-        int aOut = aA + (aB * (255 - aA) / 255);
+    public static void mixAll(int maskColor, int[] colors, int colorsOffset, int[] out, int outOffset, int count) {
+        // mask part is the same for all colors
+        int aA = maskColor >>> 24;
+        int inverseA = 255 - aA;
+        int rA = div255(((maskColor >> 16) & 0xFF) * aA);
+        int gA = div255(((maskColor >> 8) & 0xFF) * aA);
+        int bA = div255((maskColor & 0xFF) * aA);
 
-        return Color.argb(aOut, rOut, gOut, bOut);
+        for (int i = 0; i < count; i++) {
+            int B = colors[colorsOffset + i];
+            int weightB = (B >>> 24) * inverseA;
+            int rOut = rA + div65025(((B >> 16) & 0xFF) * weightB);
+            int gOut = gA + div65025(((B >> 8) & 0xFF) * weightB);
+            int bOut = bA + div65025((B & 0xFF) * weightB);
+            int aOut = aA + div255(weightB);
+            out[outOffset + i] = (aOut << 24) | (rOut << 16) | (gOut << 8) | bOut;
+        }
+    }
+
+    /**
+     * Mixes a mask color over all remaining colors of a buffer. Both buffer positions are advanced.
+     */
+    public static void mixAll(int maskColor, IntBuffer colors, IntBuffer out) {
+        int count = colors.remaining();
+        if (colors.hasArray() && out.hasArray()) {
+            mixAll(maskColor, colors.array(), colors.arrayOffset() + colors.position(),
+                    out.array(), out.arrayOffset() + out.position(), count);
+            colors.position(colors.position() + count);
+            out.position(out.position() + count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                out.put(mix(maskColor, colors.get()));
+            }
+        }
+    }
+
+    /**
+     * floor(x / 255) for 0 <= x <= 255 * 255.
+     */
+    private static int div255(int x) {
+        return (x + 1 + (x >> 8)) >> 8;
+    }
+
+    /**
+     * floor(x / (255 * 255)) for 0 <= x <= 255 * 255 * 255.
+     */
+    private static int div65025(int x) {
+        return (int) (x * 0x1020305L >>> 40);
     }
 
     @ColorInt
@@ -48,10 +134,39 @@ public class Coloring {
     }
 
     public static float getColorBrightness(int normalColor) {
-        int r = Color.red(normalColor);
-        int g = Color.green(normalColor);
-        int b = Color.blue(normalColor);
-        return ((b + r + r + g + g + g) / 6 / 255f);
+        int r = (normalColor >> 16) & 0xFF;
+        int g = (normalColor >> 8) & 0xFF;
+        int b = normalColor & 0xFF;
+        return BRIGHTNESS[div6(b + r + r + g + g + g)];
+    }
+
+    /**
+     * Calculates brightness of every color of an array, same as calling {@link #getColorBrightness(int)} for each of them.
+     *
+     * @param colors Source colors.
+     * @param out    Brightness values, at least as long as colors.
+     */
+    public static void getColorBrightness(int[] colors, float[] out) {
+        for (int i = 0; i < colors.length; i++) {
+            int c = colors[i];
+            out[i] = BRIGHTNESS[div6(((c >> 16) & 0xFF) * 2 + ((c >> 8) & 0xFF) * 3 + (c & 0xFF))];
+        }
+    }
+
+    /**
+     * Calculates brightness of all remaining colors of a buffer. Both buffer positions are advanced.
+     */
+    public static void getColorBrightness(IntBuffer colors, FloatBuffer out) {
+        while (colors.hasRemaining()) {
+            out.put(getColorBrightness(colors.get()));
+        }
+    }
+
+    /**
+     * floor(x / 6) for 0 <= x <= 6 * 255.
+     */
+    private static int div6(int x) {
+        return (x * 43691) >>> 18;
     }
 
     @ColorInt
@@ -70,19 +185,6 @@ public class Coloring {
     }
 
     public static ColorStateList getColorStateList(int normalColor, int pressedColor, int disabledColor) {
-        return new ColorStateList(
-                new int[][]{
-                        new int[]{-android.R.attr.state_enabled,
-                                -android.R.attr.state_pressed,
-                                -android.R.attr.state_selected,
-                                -android.R.attr.state_focused},
-                        new int[]{android.R.attr.state_pressed},
-                        new int[]{}
-                },
-                new int[]{
-                        disabledColor,
-                        pressedColor,
-                        normalColor}
-        );
+        return ColorStateListCache.get(STATES, normalColor, pressedColor, disabledColor);
     }
 }
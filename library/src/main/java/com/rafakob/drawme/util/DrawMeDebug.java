@@ -0,0 +1,85 @@
+package com.rafakob.drawme.util;
+
+import android.util.Log;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Debug registry of widgets whose backgrounds were optimized away, eg. transparent layouts which
+ * got no background at all. Disabled by default, enable it in debug builds before inflating views.
+ */
+public class DrawMeDebug {
+    public static final String TAG = "DrawMe";
+
+    public static final String NO_BACKGROUND = "no background";
+    public static final String NO_RIPPLE_LAYER = "no ripple layer";
+
+    private static volatile boolean enabled;
+    private static final WeakHashMap<View, String> optimizedViews = new WeakHashMap<>();
+
+    public static void setEnabled(boolean enabled) {
+        DrawMeDebug.enabled = enabled;
+        if (!enabled) {
+            synchronized (optimizedViews) {
+                optimizedViews.clear();
+            }
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records optimization applied to a view background. Does nothing unless debugging is enabled.
+     *
+     * @param optimization {@link #NO_BACKGROUND}, {@link #NO_RIPPLE_LAYER} or null if background is not optimized.
+     */
+    public static void setOptimization(View view, String optimization) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (optimizedViews) {
+            if (optimization == null) {
+                optimizedViews.remove(view);
+            } else {
+                optimizedViews.put(view, optimization);
+            }
+        }
+    }
+
+    /**
+     * @return Optimization applied to a view or null.
+     */
+    public static String getOptimization(View view) {
+        synchronized (optimizedViews) {
+            return optimizedViews.get(view);
+        }
+    }
+
+    /**
+     * @return Views with optimized backgrounds which are still alive.
+     */
+    public static List<View> getOptimizedViews() {
+        synchronized (optimizedViews) {
+            return new ArrayList<>(optimizedViews.keySet());
+        }
+    }
+
+    /**
+     * Logs all views with optimized backgrounds.
+     */
+    public static void dump() {
+        synchronized (optimizedViews) {
+            Log.d(TAG, optimizedViews.size() + " optimized views");
+            for (Map.Entry<View, String> entry : optimizedViews.entrySet()) {
+                View view = entry.getKey();
+                Log.d(TAG, view.getClass().getSimpleName() + " id=" + view.getId() + ": " + entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.rafakob.drawme.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small, bounded pool of low priority threads used for background work of DrawMe widgets.
+ * When the queue is full tasks run on the calling thread, so work is never lost.
+ */
+public class DrawMeExecutor {
+    private static final int MAX_THREADS = 2;
+    private static final int MAX_QUEUED = 64;
+
+    private static volatile ThreadPoolExecutor executor;
+    private static volatile Handler mainHandler;
+
+    public static Future<?> submit(Runnable task) {
+        return getExecutor().submit(task);
+    }
+
+    public static void postToMain(Runnable task) {
+        getMainHandler().post(task);
+    }
+
+    public static void removeFromMain(Runnable task) {
+        getMainHandler().removeCallbacks(task);
+    }
+
+    public static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (DrawMeExecutor.class) {
+                if (executor == null) {
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 5, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(MAX_QUEUED), new DrawMeThreadFactory(),
+                            new ThreadPoolExecutor.CallerRunsPolicy());
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static Handler getMainHandler() {
+        if (mainHandler == null) {
+            synchronized (DrawMeExecutor.class) {
+                if (mainHandler == null) {
+                    mainHandler = new Handler(Looper.getMainLooper());
+                }
+            }
+        }
+        return mainHandler;
+    }
+
+    private static class DrawMeThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "DrawMe #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.rafakob.drawme.util;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.util.Log;
+
+import com.rafakob.drawme.drawable.ShapeBitmapCache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Opt-in registry of rendering metrics reported by DrawMe delegates: attribute resolutions,
+ * background rebuilds by cause, background build times, drawables created per screen and cache hit rates.
+ * Disabled by default, reporting costs a single volatile read then.
+ * <pre>
+ * DrawMeMetrics.setEnabled(true);
+ * ...
+ * DrawMeMetrics.Snapshot snapshot = DrawMeMetrics.snapshot();
+ * </pre>
+ */
+public class DrawMeMetrics {
+    public static final String TAG = "DrawMe";
+
+    /* Rebuild causes */
+    public static final int CAUSE_SETTER = 0;
+    public static final int CAUSE_LAYOUT = 1;
+    public static final int CAUSE_BATCH = 2;
+    public static final int CAUSE_REBIND = 3;
+    private static final String[] CAUSE_NAMES = {"setter", "layout", "batch", "rebind"};
+
+    /* Upper bounds of build time histogram buckets in microseconds, last bucket is unbounded */
+    private static final long[] BUILD_TIME_BUCKETS = {50, 100, 250, 500, 1000, 2000, 5000};
+
+    private static volatile boolean enabled;
+
+    private static final AtomicLong shapeResolutions = new AtomicLong();
+    private static final AtomicLong cachedShapeResolutions = new AtomicLong();
+    private static final AtomicLong textResolutions = new AtomicLong();
+    private static final AtomicLong cachedTextResolutions = new AtomicLong();
+    private static final AtomicLong themeResolutions = new AtomicLong();
+    private static final AtomicLongArray rebuilds = new AtomicLongArray(CAUSE_NAMES.length);
+    private static final AtomicLongArray skippedRebuilds = new AtomicLongArray(CAUSE_NAMES.length);
+    private static final AtomicLong recolors = new AtomicLong();
+    private static final AtomicLongArray buildTimes = new AtomicLongArray(BUILD_TIME_BUCKETS.length + 1);
+    private static final AtomicLong buildTimeTotal = new AtomicLong();
+    /* Keyed by simple class name of an activity */
+    private static final ConcurrentHashMap<String, AtomicLong> drawablesByScreen = new ConcurrentHashMap<>();
+
+    public static void setEnabled(boolean enabled) {
+        DrawMeMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param text   True for text attributes, false for shape attributes.
+     * @param cached True if attributes were taken from the attribute cache.
+     */
+    public static void onAttributesResolved(boolean text, boolean cached) {
+        if (!enabled) {
+            return;
+        }
+        if (text) {
+            (cached ? cachedTextResolutions : textResolutions).incrementAndGet();
+        } else {
+            (cached ? cachedShapeResolutions : shapeResolutions).incrementAndGet();
+        }
+    }
+
+    public static void onThemeResolved() {
+        if (enabled) {
+            themeResolutions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param cause   One of CAUSE_ constants.
+     * @param skipped True if nothing has changed and background has been kept.
+     */
+    public static void onRebuild(int cause, boolean skipped) {
+        if (enabled) {
+            (skipped ? skippedRebuilds : rebuilds).incrementAndGet(cause);
+        }
+    }
+
+    /**
+     * Background has been recolored in place instead of being rebuilt.
+     */
+    public static void onRecolor() {
+        if (enabled) {
+            recolors.incrementAndGet();
+        }
+    }
+
+    public static void onBackgroundBuilt(long nanos) {
+        if (!enabled) {
+            return;
+        }
+        long micros = nanos / 1000;
+        int bucket = 0;
+        while (bucket < BUILD_TIME_BUCKETS.length && micros >= BUILD_TIME_BUCKETS[bucket]) {
+            bucket++;
+        }
+        buildTimes.incrementAndGet(bucket);
+        buildTimeTotal.addAndGet(nanos);
+    }
+
+    /**
+     * A drawable has been created or copied from a cache for a view, counted per screen.
+     *
+     * @param context Context of the view, its activity names the screen.
+     */
+    public static void onDrawableAllocated(Context context) {
+        if (!enabled) {
+            return;
+        }
+        String screen = getScreenName(context);
+        AtomicLong count = drawablesByScreen.get(screen);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = drawablesByScreen.putIfAbsent(screen, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * @return Simple class name of the activity behind a context, or of the context itself if there is none.
+     */
+    private static String getScreenName(Context context) {
+        Context c = context;
+        while (c instanceof ContextWrapper) {
+            if (c instanceof Activity) {
+                return c.getClass().getSimpleName();
+            }
+            c = ((ContextWrapper) c).getBaseContext();
+        }
+        return context.getClass().getSimpleName();
+    }
+
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Resets counters of this registry. Statistics of caches are kept.
+     */
+    public static void reset() {
+        shapeResolutions.set(0);
+        cachedShapeResolutions.set(0);
+        textResolutions.set(0);
+        cachedTextResolutions.set(0);
+        themeResolutions.set(0);
+        for (int i = 0; i < CAUSE_NAMES.length; i++) {
+            rebuilds.set(i, 0);
+            skippedRebuilds.set(i, 0);
+        }
+        recolors.set(0);
+        for (int i = 0; i < buildTimes.length(); i++) {
+            buildTimes.set(i, 0);
+        }
+        buildTimeTotal.set(0);
+        drawablesByScreen.clear();
+    }
+
+    /**
+     * Logs current snapshot.
+     */
+    public static void dump() {
+        Log.d(TAG, snapshot().toString());
+    }
+
+    private static long[] toArray(AtomicLongArray array) {
+        long[] result = new long[array.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = array.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Plain copy of all metrics at a given moment.
+     */
+    public static final class Snapshot {
+        public final long shapeResolutions;
+        public final long cachedShapeResolutions;
+        public final long textResolutions;
+        public final long cachedTextResolutions;
+        public final long themeResolutions;
+        /* Indexed by CAUSE_ constants */
+        public final long[] rebuilds;
+        public final long[] skippedRebuilds;
+        public final long recolors;
+        /* Counts of builds faster than 50, 100, 250, 500, 1000, 2000, 5000 and more microseconds */
+        public final long[] buildTimeHistogram;
+        public final long buildTimeTotalNanos;
+        /* Drawables created or copied from caches, by screen name */
+        public final Map<String, Long> drawablesByScreen;
+        public final int fontHits;
+        public final int fontMisses;
+        public final int fontEvictions;
+        public final int backgroundCacheHits;
+        public final int backgroundCacheMisses;
+        public final int bitmapCacheHits;
+        public final int bitmapCacheMisses;
+
+        private Snapshot() {
+            shapeResolutions = DrawMeMetrics.shapeResolutions.get();
+            cachedShapeResolutions = DrawMeMetrics.cachedShapeResolutions.get();
+            textResolutions = DrawMeMetrics.textResolutions.get();
+            cachedTextResolutions = DrawMeMetrics.cachedTextResolutions.get();
+            themeResolutions = DrawMeMetrics.themeResolutions.get();
+            rebuilds = toArray(DrawMeMetrics.rebuilds);
+            skippedRebuilds = toArray(DrawMeMetrics.skippedRebuilds);
+            recolors = DrawMeMetrics.recolors.get();
+            buildTimeHistogram = toArray(buildTimes);
+            buildTimeTotalNanos = buildTimeTotal.get();
+            TreeMap<String, Long> drawables = new TreeMap<>();
+            for (Map.Entry<String, AtomicLong> entry : DrawMeMetrics.drawablesByScreen.entrySet()) {
+                drawables.put(entry.getKey(), entry.getValue().get());
+            }
+            drawablesByScreen = Collections.unmodifiableMap(drawables);
+            fontHits = FontCache.getHitCount();
+            fontMisses = FontCache.getMissCount();
+            fontEvictions = FontCache.getEvictionCount();
+            backgroundCacheHits = BackgroundCache.getHitCount();
+            backgroundCacheMisses = BackgroundCache.getMissCount();
+            bitmapCacheHits = ShapeBitmapCache.getHitCount();
+            bitmapCacheMisses = ShapeBitmapCache.getMissCount();
+        }
+
+        public long getBuildCount() {
+            long count = 0;
+            for (long c : buildTimeHistogram) {
+                count += c;
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("DrawMeMetrics");
+            sb.append("\n attributes: shape ").append(shapeResolutions).append(" (+").append(cachedShapeResolutions).append(" cached)")
+                    .append(", text ").append(textResolutions).append(" (+").append(cachedTextResolutions).append(" cached)")
+                    .append(", themes ").append(themeResolutions);
+            sb.append("\n rebuilds:");
+            for (int i = 0; i < CAUSE_NAMES.length; i++) {
+                sb.append(' ').append(CAUSE_NAMES[i]).append(' ').append(rebuilds[i]).append(" (+").append(skippedRebuilds[i]).append(" skipped)");
+            }
+            sb.append(", recolors ").append(recolors);
+            long builds = getBuildCount();
+            sb.append("\n builds: ").append(builds)
+                    .append(", avg ").append(builds == 0 ? 0 : buildTimeTotalNanos / builds / 1000).append("us")
+                    .append(", histogram ").append(Arrays.toString(buildTimeHistogram));
+            sb.append("\n drawables:");
+            for (Map.Entry<String, Long> entry : drawablesByScreen.entrySet()) {
+                sb.append(' ').append(entry.getKey()).append(' ').append(entry.getValue());
+            }
+            sb.append("\n caches: fonts ").append(fontHits).append('/').append(fontHits + fontMisses)
+                    .append(" (").append(fontEvictions).append(" evicted)")
+                    .append(", backgrounds ").append(backgroundCacheHits).append('/').append(backgroundCacheHits + backgroundCacheMisses)
+                    .append(", bitmaps ").append(bitmapCacheHits).append('/').append(bitmapCacheHits + bitmapCacheMisses);
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.rafakob.drawme.util;
+
+import android.support.v4.os.TraceCompat;
+import android.view.View;
+
+/**
+ * Named system trace sections around DrawMe work, eg. "DrawMe:obtainAttributes DrawMeButton/button_ok".
+ * Disabled by default, a disabled section costs a single volatile read.
+ * <pre>
+ * boolean trace = DrawMeTrace.begin("onMeasure", view);
+ * ...
+ * DrawMeTrace.end(trace);
+ * </pre>
+ */
+public class DrawMeTrace {
+    private static final int MAX_SECTION_LENGTH = 127;
+
+    private static volatile boolean enabled;
+
+    public static void setEnabled(boolean enabled) {
+        DrawMeTrace.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return True if a section has been started, pass it to {@link #end(boolean)}.
+     */
+    public static boolean begin(String section) {
+        if (!enabled) {
+            return false;
+        }
+        beginSection("DrawMe:" + section);
+        return true;
+    }
+
+    /**
+     * Starts a section attributed to a widget - its class and id.
+     *
+     * @return True if a section has been started, pass it to {@link #end(boolean)}.
+     */
+    public static boolean begin(String section, View view) {
+        if (!enabled) {
+            return false;
+        }
+        beginSection("DrawMe:" + section + " " + view.getClass().getSimpleName() + "/" + getIdName(view));
+        return true;
+    }
+
+    public static void end(boolean started) {
+        if (started) {
+            TraceCompat.endSection();
+        }
+    }
+
+    private static void beginSection(String name) {
+        TraceCompat.beginSection(name.length() > MAX_SECTION_LENGTH ? name.substring(0, MAX_SECTION_LENGTH) : name);
+    }
+
+    private static String getIdName(View view) {
+        int id = view.getId();
+        if (id == View.NO_ID) {
+            return "no_id";
+        }
+        try {
+            return view.getResources().getResourceEntryName(id);
+        } catch (RuntimeException e) {
+            return Integer.toHexString(id);
+        }
+    }
+}
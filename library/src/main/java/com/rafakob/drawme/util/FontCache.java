@@ -1,24 +1,244 @@
 package com.rafakob.drawme.util;
 
 import android.content.Context;
+import android.content.res.AssetManager;
 import android.graphics.Typeface;
-import android.support.v4.util.SimpleArrayMap;
+import android.os.SystemClock;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of typefaces loaded from "assets/fonts/".
+ * Lookups of loaded fonts don't take any lock. Every font is loaded under its own lock,
+ * so a slow load never blocks lookups of other fonts. Fonts which failed to load are cached too
+ * and return null without touching assets again. When the cache is full a font which hasn't been
+ * used recently is dropped (CLOCK approximation of LRU, bookkeeping is done on misses only).
+ * Views may still use its typeface, so a dropped typeface is reused on the next lookup as long as
+ * it's alive instead of being loaded again.
+ */
 public class FontCache {
-    private static final SimpleArrayMap<String, Typeface> cache = new SimpleArrayMap<>();
+    public static final int DEFAULT_MAX_SIZE = 32;
+
+    private static final ConcurrentHashMap<String, FontEntry> cache = new ConcurrentHashMap<>();
+    /* Typefaces of evicted fonts, views may still hold them */
+    private static final ConcurrentHashMap<String, WeakReference<Typeface>> dropped = new ConcurrentHashMap<>();
+    /* Cached entries in eviction order, guards all changes of the cache */
+    private static final ArrayDeque<FontEntry> clock = new ArrayDeque<>();
+    private static int maxSize = DEFAULT_MAX_SIZE;
 
+    private static final AtomicInteger hitCount = new AtomicInteger();
+    private static final AtomicInteger missCount = new AtomicInteger();
+    private static final AtomicInteger failedCount = new AtomicInteger();
+    private static final AtomicInteger evictionCount = new AtomicInteger();
+    private static final AtomicInteger reusedCount = new AtomicInteger();
+    private static final AtomicLong loadTime = new AtomicLong();
+
+    /**
+     * @param name File name of a font in "assets/fonts/".
+     * @return Typeface or null if font can't be loaded.
+     */
     public static Typeface get(Context c, String name) {
-        synchronized (cache) {
-            if (!cache.containsKey(name)) {
-                try {
-                    Typeface t = Typeface.createFromAsset(c.getAssets(), String.format("fonts/%s", name));
-                    cache.put(name, t);
-                    return t;
-                } catch (RuntimeException e) {
-                    return null;
+        return getEntry(name).get(c.getAssets());
+    }
+
+    /**
+     * Loads given fonts on a background thread, eg. at app startup, so widgets inflated later only hit the cache.
+     *
+     * @param names File names of fonts in "assets/fonts/".
+     */
+    public static void preload(Context c, final String... names) {
+        final AssetManager assets = c.getApplicationContext().getAssets();
+        DrawMeExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (String name : names) {
+                    getEntry(name).get(assets);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the entry of a font. A hit only marks the entry as recently used,
+     * a new entry is created under the cache lock and a font is evicted if needed.
+     */
+    private static FontEntry getEntry(String name) {
+        FontEntry entry = cache.get(name);
+        if (entry == null) {
+            synchronized (clock) {
+                entry = cache.get(name);
+                if (entry == null) {
+                    entry = new FontEntry(name);
+                    cache.put(name, entry);
+                    clock.addLast(entry);
+                    trimToSize();
+                    return entry;
                 }
             }
-            return cache.get(name);
+        }
+        entry.touch();
+        return entry;
+    }
+
+    /**
+     * Evicts fonts until the cache fits its max size. Entries used since the last pass get a second chance
+     * and go to the end of the queue, so fonts used by every screen stay cached. Must hold the cache lock.
+     */
+    private static void trimToSize() {
+        boolean evicted = false;
+        while (clock.size() > maxSize) {
+            FontEntry eldest = clock.pollFirst();
+            if (eldest.referenced) {
+                eldest.referenced = false;
+                clock.addLast(eldest);
+                continue;
+            }
+            cache.remove(eldest.name);
+            evictionCount.incrementAndGet();
+            evicted = true;
+            Typeface typeface = eldest.getLoaded();
+            if (typeface != null) {
+                dropped.put(eldest.name, new WeakReference<>(typeface));
+            }
+        }
+        if (evicted) {
+            pruneDropped();
+        }
+    }
+
+    /**
+     * Forgets evicted typefaces which have been garbage collected.
+     */
+    private static void pruneDropped() {
+        Iterator<Map.Entry<String, WeakReference<Typeface>>> it = dropped.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().get() == null) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Changes max number of cached fonts.
+     *
+     * @param maxSize Max number of entries, failed loads included.
+     */
+    public static void setMaxSize(int maxSize) {
+        synchronized (clock) {
+            FontCache.maxSize = maxSize;
+            trimToSize();
+        }
+    }
+
+    public static void clear() {
+        synchronized (clock) {
+            cache.clear();
+            clock.clear();
+            dropped.clear();
+        }
+    }
+
+    public static int getHitCount() {
+        return hitCount.get();
+    }
+
+    public static int getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return Number of fonts which couldn't be loaded.
+     */
+    public static int getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return Number of fonts dropped from the cache to make room for other fonts.
+     */
+    public static int getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return Number of loads avoided by reusing a typeface of an evicted font which was still in use.
+     */
+    public static int getReusedCount() {
+        return reusedCount.get();
+    }
+
+    /**
+     * @return Total time spent in loading fonts from assets.
+     */
+    public static long getLoadTimeMillis() {
+        return loadTime.get();
+    }
+
+    private static class FontEntry {
+        private final String name;
+        private volatile boolean loaded;
+        /* Set on every hit, cleared by eviction passes; new entries start as used */
+        private volatile boolean referenced = true;
+        private Typeface typeface;
+
+        FontEntry(String name) {
+            this.name = name;
+        }
+
+        void touch() {
+            // read first, so hits of a hot font don't keep writing a shared cache line
+            if (!referenced) {
+                referenced = true;
+            }
+        }
+
+        Typeface get(AssetManager assets) {
+            if (loaded) {
+                hitCount.incrementAndGet();
+                return typeface;
+            }
+            return load(assets);
+        }
+
+        /**
+         * @return Typeface or null if it's not loaded yet or it failed to load.
+         */
+        Typeface getLoaded() {
+            return loaded ? typeface : null;
+        }
+
+        private synchronized Typeface load(AssetManager assets) {
+            if (loaded) {
+                hitCount.incrementAndGet();
+                return typeface;
+            }
+
+            WeakReference<Typeface> ref = dropped.remove(name);
+            typeface = ref == null ? null : ref.get();
+            if (typeface != null) {
+                reusedCount.incrementAndGet();
+                loaded = true;
+                return typeface;
+            }
+
+            missCount.incrementAndGet();
+            boolean trace = DrawMeTrace.begin("loadFont " + name);
+            long start = SystemClock.uptimeMillis();
+            try {
+                typeface = Typeface.createFromAsset(assets, "fonts/" + name);
+            } catch (RuntimeException e) {
+                failedCount.incrementAndGet();
+            }
+            loadTime.addAndGet(SystemClock.uptimeMillis() - start);
+            DrawMeTrace.end(trace);
+            loaded = true;
+            return typeface;
         }
     }
 }
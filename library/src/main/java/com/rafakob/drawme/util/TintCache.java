@@ -0,0 +1,71 @@
+package com.rafakob.drawme.util;
+
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+
+/**
+ * Process-wide LRU cache of tinted drawable states, keyed by (drawable resource, tint color, tint mode).
+ * Widgets using the same icon with the same tint share a single tinted state instead of mutating their own copy.
+ */
+public class TintCache {
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private static volatile LruCache<Key, Drawable.ConstantState> cache = new LruCache<>(DEFAULT_MAX_SIZE);
+
+    /**
+     * @return New drawable backed by the cached tinted state or null if there is none.
+     */
+    public static Drawable get(int resId, int tintColor, int tintMode, Resources resources) {
+        Drawable.ConstantState state = cache.get(new Key(resId, tintColor, tintMode));
+        return state == null ? null : state.newDrawable(resources);
+    }
+
+    /**
+     * Caches state of a given tinted drawable. Drawables which don't provide a constant state are ignored.
+     */
+    public static void put(int resId, int tintColor, int tintMode, Drawable drawable) {
+        Drawable.ConstantState state = drawable.getConstantState();
+        if (state != null) {
+            cache.put(new Key(resId, tintColor, tintMode), state);
+        }
+    }
+
+    /**
+     * Changes max number of cached states. Current entries are dropped.
+     *
+     * @param maxSize Max number of entries.
+     */
+    public static void setMaxSize(int maxSize) {
+        cache = new LruCache<>(maxSize);
+    }
+
+    public static void clear() {
+        cache.evictAll();
+    }
+
+    private static final class Key {
+        private final int resId;
+        private final int tintColor;
+        private final int tintMode;
+
+        Key(int resId, int tintColor, int tintMode) {
+            this.resId = resId;
+            this.tintColor = tintColor;
+            this.tintMode = tintMode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return resId == k.resId && tintColor == k.tintColor && tintMode == k.tintMode;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * resId + tintColor) + tintMode;
+        }
+    }
+}
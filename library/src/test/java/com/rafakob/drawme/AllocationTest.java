@@ -0,0 +1,450 @@
+package com.rafakob.drawme;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.drawable.ShapeBitmapCache;
+import com.rafakob.drawme.render.FakeShapeView;
+import com.rafakob.drawme.render.FakeTextView;
+import com.rafakob.drawme.render.ShadowQuietDrawable;
+import com.rafakob.drawme.render.ShadowQuietTextView;
+import com.rafakob.drawme.render.ShadowRasterCanvas;
+import com.rafakob.drawme.render.ShadowRasterPaint;
+import com.rafakob.drawme.render.ShadowRasterPath;
+import com.rafakob.drawme.util.BackgroundCache;
+import com.rafakob.drawme.util.Coloring;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fails when a steady state hot path starts to allocate: measure, layout, state changes and skipped rebuilds
+ * of widgets, and the color and spec helpers they use. Widgets run on Robolectric, so framework code is
+ * measured as well. Allocated bytes are read from the JVM per-thread counter, the test is skipped on JVMs
+ * which don't provide it. Invalidation goes through quiet shadows, the stock ones allocate on every call.
+ * All Robolectric tests of the module use the same shadows, so they share one sandbox.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 19,
+        shadows = {ShadowQuietDrawable.class, ShadowQuietTextView.class,
+                ShadowRasterCanvas.class, ShadowRasterPaint.class, ShadowRasterPath.class})
+public class AllocationTest {
+    private static final int WARM_UP = 20000;
+    private static final int ITERATIONS = 100000;
+    /* Widget paths run through Robolectric shadows, which are orders of magnitude slower */
+    private static final int VIEW_WARM_UP = 500;
+    private static final int VIEW_ITERATIONS = 2000;
+    private static final int ROUNDS = 3;
+    /* Any allocation per call would be at least 16 bytes * iterations, this only absorbs counter noise */
+    private static final long TOLERANCE_BYTES = 1024;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private static final int[] PALETTE = new int[256];
+    private static final int[] MIXED = new int[256];
+    private static final float[] BRIGHTNESS = new float[256];
+    private static final IntBuffer HEAP_COLORS = IntBuffer.allocate(256);
+    private static final IntBuffer HEAP_OUT = IntBuffer.allocate(256);
+    private static final IntBuffer DIRECT_COLORS = directInts(256);
+    private static final IntBuffer DIRECT_OUT = directInts(256);
+    private static final FloatBuffer BRIGHTNESS_OUT = FloatBuffer.allocate(256);
+    private static final float[] RADII = new float[8];
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 40;
+
+    private static ShapeSpec spec;
+    private static ShapeSpec recolored;
+    private static ShapeSpec other;
+
+    /* Results are accumulated here so the JIT can't drop the measured calls */
+    private static volatile long sink;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < PALETTE.length; i++) {
+            PALETTE[i] = (i << 24) | (i * 0x010305);
+        }
+        HEAP_COLORS.clear();
+        HEAP_COLORS.put(PALETTE);
+        DIRECT_COLORS.clear();
+        DIRECT_COLORS.put(PALETTE);
+
+        spec = new ShapeSpec.Builder()
+                .backColor(0xFF3F51B5)
+                .backColorPressed(0xFF303F9F)
+                .stroke(2)
+                .strokeColor(0xFF000000)
+                .radius(8)
+                .radiusTopLeft(0)
+                .statePressed(true)
+                .build();
+        recolored = spec.buildUpon().backColor(0xFFFF4081).build();
+        other = spec.buildUpon().radius(4).build();
+
+        BackgroundCache.clear();
+        BackgroundCache.put(spec, new CachedDrawable());
+        ShapeBitmapCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        BackgroundCache.clear();
+    }
+
+    @Test
+    public void mixDoesNotAllocate() {
+        assertNoAllocations("Coloring.mix", new Runnable() {
+            @Override
+            public void run() {
+                sink += Coloring.mix(ShapeSpec.DEFAULT_MASK_COLOR_PRESSED, PALETTE[(int) (sink & 0xFF)]);
+            }
+        });
+    }
+
+    @Test
+    public void mixAllDoesNotAllocate() {
+        assertNoAllocations("Coloring.mixAll(int[])", new Runnable() {
+            @Override
+            public void run() {
+                Coloring.mixAll(ShapeSpec.DEFAULT_MASK_COLOR_DISABLED, PALETTE, MIXED);
+                sink += MIXED[17];
+            }
+        });
+        assertNoAllocations("Coloring.mixAll(IntBuffer) heap", new Runnable() {
+            @Override
+            public void run() {
+                HEAP_COLORS.clear();
+                HEAP_OUT.clear();
+                Coloring.mixAll(ShapeSpec.DEFAULT_MASK_COLOR_DISABLED, HEAP_COLORS, HEAP_OUT);
+                sink += HEAP_OUT.get(17);
+            }
+        });
+        assertNoAllocations("Coloring.mixAll(IntBuffer) direct", new Runnable() {
+            @Override
+            public void run() {
+                DIRECT_COLORS.clear();
+                DIRECT_OUT.clear();
+                Coloring.mixAll(ShapeSpec.DEFAULT_MASK_COLOR_DISABLED, DIRECT_COLORS, DIRECT_OUT);
+                sink += DIRECT_OUT.get(17);
+            }
+        });
+    }
+
+    @Test
+    public void brightnessDoesNotAllocate() {
+        assertNoAllocations("Coloring.getColorBrightness", new Runnable() {
+            @Override
+            public void run() {
+                sink += Float.floatToIntBits(Coloring.getColorBrightness(PALETTE[(int) (sink & 0xFF)]));
+            }
+        });
+        assertNoAllocations("Coloring.getColorBrightness(int[])", new Runnable() {
+            @Override
+            public void run() {
+                Coloring.getColorBrightness(PALETTE, BRIGHTNESS);
+                sink += Float.floatToIntBits(BRIGHTNESS[17]);
+            }
+        });
+        assertNoAllocations("Coloring.getColorBrightness(IntBuffer)", new Runnable() {
+            @Override
+            public void run() {
+                HEAP_COLORS.clear();
+                BRIGHTNESS_OUT.clear();
+                Coloring.getColorBrightness(HEAP_COLORS, BRIGHTNESS_OUT);
+                sink += Float.floatToIntBits(BRIGHTNESS_OUT.get(17));
+            }
+        });
+    }
+
+    @Test
+    public void shapeSpecLookupsDoNotAllocate() {
+        assertNoAllocations("ShapeSpec equals/hashCode", new Runnable() {
+            @Override
+            public void run() {
+                sink += spec.hashCode() + (spec.equals(other) ? 1 : 0) + (spec.equals(recolored) ? 1 : 0);
+            }
+        });
+        assertNoAllocations("ShapeSpec.hasSameGeometry", new Runnable() {
+            @Override
+            public void run() {
+                sink += (spec.hasSameGeometry(recolored) ? 1 : 0) + (spec.hasSameGeometry(other) ? 1 : 0);
+            }
+        });
+        assertNoAllocations("ShapeSpec.drawsNothing", new Runnable() {
+            @Override
+            public void run() {
+                sink += (spec.drawsNothing() ? 1 : 0) + (other.drawsNothing() ? 1 : 0);
+            }
+        });
+        assertNoAllocations("ShapeSpec.getCornerRadii", new Runnable() {
+            @Override
+            public void run() {
+                spec.getCornerRadii(RADII);
+                sink += (long) RADII[2];
+            }
+        });
+    }
+
+    @Test
+    public void backgroundCacheLookupsDoNotAllocate() {
+        assertNoAllocations("BackgroundCache.contains", new Runnable() {
+            @Override
+            public void run() {
+                sink += (BackgroundCache.contains(spec) ? 1 : 0) + (BackgroundCache.contains(other) ? 1 : 0);
+            }
+        });
+        assertNoAllocations("BackgroundCache.get miss", new Runnable() {
+            @Override
+            public void run() {
+                sink += BackgroundCache.get(other, null) == null ? 1 : 0;
+            }
+        });
+    }
+
+    @Test
+    public void measureDoesNotAllocate() {
+        final FakeShapeView plain = layout(new FakeShapeView(RuntimeEnvironment.application, fillAttrs().build()));
+        final FakeShapeView square = layout(new FakeShapeView(RuntimeEnvironment.application, fillAttrs()
+                .addAttribute(R.attr.dm_shapeEqualWidthHeight, "true")
+                .build()));
+        assertNoViewAllocations("View.measure", new Runnable() {
+            @Override
+            public void run() {
+                // measure specs haven't changed, without forceLayout() the view wouldn't call onMeasure
+                plain.forceLayout();
+                measure(plain);
+                square.forceLayout();
+                measure(square);
+                sink += plain.getMeasuredWidth() + square.getMeasuredWidth();
+            }
+        });
+    }
+
+    @Test
+    public void layoutDoesNotAllocate() {
+        final FakeShapeView plain = layout(new FakeShapeView(RuntimeEnvironment.application, fillAttrs().build()));
+        final FakeShapeView pill = layout(new FakeShapeView(RuntimeEnvironment.application, fillAttrs()
+                .addAttribute(R.attr.dm_shapeRadiusHalfHeight, "true")
+                .build()));
+        // View.layout() of a moved view allocates in Robolectric shadows even without DrawMe,
+        // so the delegate gets the onLayout() call a moved view would make
+        assertNoViewAllocations("DrawMeShape.onLayout of a moved view", new Runnable() {
+            private int left;
+
+            @Override
+            public void run() {
+                left = 10 - left;
+                plain.getDrawMe().onLayout(true, left, 0, left + WIDTH, HEIGHT);
+                pill.getDrawMe().onLayout(true, left, 0, left + WIDTH, HEIGHT);
+            }
+        });
+    }
+
+    @Test
+    public void stateChangeDoesNotAllocate() {
+        final FakeShapeView shape = layout(new FakeShapeView(RuntimeEnvironment.application, fillAttrs().build()));
+        final FakeTextView text = layout(new FakeTextView(RuntimeEnvironment.application, fillAttrs()
+                .addAttribute(R.attr.dm_textColor, "#FFFFFF")
+                .addAttribute(R.attr.dm_textColorPressed, "#FF4081")
+                .build()));
+        // multiline TextView merges an extra state into a new array on every state change, that's not DrawMe
+        text.setSingleLine(true);
+        assertNoViewAllocations("View.setPressed", new Runnable() {
+            private boolean pressed;
+
+            @Override
+            public void run() {
+                pressed = !pressed;
+                shape.setPressed(pressed);
+                text.setPressed(pressed);
+                sink += text.getCurrentTextColor();
+            }
+        });
+        assertTrue(text.getBackground().isStateful());
+    }
+
+    @Test
+    public void rasterizedStateChangeDoesNotAllocate() throws InterruptedException {
+        final FakeShapeView shape = layout(new FakeShapeView(RuntimeEnvironment.application, fillAttrs()
+                .addAttribute(R.attr.dm_rasterize, "true")
+                .build()));
+        final Drawable background = shape.getBackground();
+        // canvas without a bitmap, draws only look up the bitmap of the current state
+        final Canvas canvas = new Canvas();
+        background.setBounds(0, 0, WIDTH, HEIGHT);
+        runBackgroundResult();
+        background.draw(canvas);
+        int misses = ShapeBitmapCache.getMissCount();
+        int hits = ShapeBitmapCache.getHitCount();
+        assertNoViewAllocations("RasterShapeDrawable.draw after a state change", new Runnable() {
+            private boolean pressed;
+
+            @Override
+            public void run() {
+                pressed = !pressed;
+                shape.setPressed(pressed);
+                background.draw(canvas);
+            }
+        });
+        // every state has been rasterized ahead of time
+        assertEquals(misses, ShapeBitmapCache.getMissCount());
+        assertTrue(ShapeBitmapCache.getHitCount() > hits);
+    }
+
+    @Test
+    public void skippedRebuildDoesNotAllocate() {
+        final FakeShapeView shape = layout(new FakeShapeView(RuntimeEnvironment.application, fillAttrs().build()));
+        final FakeTextView text = layout(new FakeTextView(RuntimeEnvironment.application, fillAttrs()
+                .addAttribute(R.attr.dm_textColor, "#FFFFFF")
+                .addAttribute(R.attr.dm_textColorPressed, "#FF4081")
+                .build()));
+        assertNoViewAllocations("DrawMeShape.updateLayout with unchanged spec", new Runnable() {
+            @Override
+            public void run() {
+                // text colors come from the interned list, setTextColor() isn't called again
+                shape.getDrawMe().updateLayout();
+                text.getDrawMe().updateLayout();
+                sink += text.getCurrentTextColor();
+            }
+        });
+    }
+
+    private static Robolectric.AttributeSetBuilder fillAttrs() {
+        return Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.dm_backColor, "#3F51B5")
+                .addAttribute(R.attr.dm_stroke, "2px")
+                .addAttribute(R.attr.dm_strokeColor, "#303F9F")
+                .addAttribute(R.attr.dm_radius, "8px");
+    }
+
+    private static <T extends View> T layout(T view) {
+        measure(view);
+        view.layout(0, 0, WIDTH, HEIGHT);
+        return view;
+    }
+
+    private static void measure(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+    }
+
+    /**
+     * Waits until a background task posts its result to the main thread and runs it.
+     */
+    private static void runBackgroundResult() throws InterruptedException {
+        Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.size() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("background task hasn't finished", scheduler.size() > 0);
+        ShadowLooper.runUiThreadTasks();
+    }
+
+    private static void assertNoAllocations(String name, Runnable path) {
+        assertNoAllocations(name, WARM_UP, ITERATIONS, path);
+    }
+
+    private static void assertNoViewAllocations(String name, Runnable path) {
+        assertNoAllocations(name, VIEW_WARM_UP, VIEW_ITERATIONS, path);
+    }
+
+    private static void assertNoAllocations(String name, int warmUp, int iterations, Runnable path) {
+        long overhead = measure(warmUp, iterations, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        long allocated = measure(warmUp, iterations, path) - overhead;
+        assertTrue(name + " allocated " + allocated + " bytes in " + iterations + " calls",
+                allocated <= TOLERANCE_BYTES);
+    }
+
+    /**
+     * @return Bytes allocated by the best of a few rounds, so one-off allocations of the JVM (eg. when a method
+     * gets compiled) don't fail the test. A path which allocates on every call allocates in every round.
+     */
+    private static long measure(int warmUp, int iterations, Runnable path) {
+        for (int i = 0; i < warmUp; i++) {
+            path.run();
+        }
+        long thread = Thread.currentThread().getId();
+        long min = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < iterations; i++) {
+                path.run();
+            }
+            min = Math.min(min, threads.getThreadAllocatedBytes(thread) - before);
+        }
+        return min;
+    }
+
+    private static IntBuffer directInts(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    private static class CachedDrawable extends Drawable {
+        private final ConstantState state = new ConstantState() {
+            @Override
+            public Drawable newDrawable() {
+                return new CachedDrawable();
+            }
+
+            @Override
+            public int getChangingConfigurations() {
+                return 0;
+            }
+        };
+
+        @Override
+        public ConstantState getConstantState() {
+            return state;
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.rafakob.drawme;
+
+import android.content.Context;
+import android.view.View;
+
+import com.rafakob.drawme.delegate.AttributeCache;
+import com.rafakob.drawme.delegate.DrawMeShape;
+import com.rafakob.drawme.delegate.ShapeSpec;
+import com.rafakob.drawme.delegate.ThemeColorTable;
+import com.rafakob.drawme.render.FakeShapeView;
+import com.rafakob.drawme.render.ShadowQuietDrawable;
+import com.rafakob.drawme.render.ShadowQuietTextView;
+import com.rafakob.drawme.render.ShadowRasterCanvas;
+import com.rafakob.drawme.render.ShadowRasterPaint;
+import com.rafakob.drawme.render.ShadowRasterPath;
+import com.rafakob.drawme.util.BackgroundCache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that backgrounds built by {@link DrawMeWarmUp} are the ones widgets look up later. Styles come from
+ * src/debug/res, so they are available to unit tests but not shipped.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 19,
+        shadows = {ShadowQuietDrawable.class, ShadowQuietTextView.class,
+                ShadowRasterCanvas.class, ShadowRasterPaint.class, ShadowRasterPath.class})
+public class DrawMeWarmUpTest {
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 40;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        AttributeCache.clear();
+        BackgroundCache.clear();
+        ThemeColorTable.clear();
+    }
+
+    @Test
+    public void warmedStyleIsUsedByStyledWidget() {
+        DrawMeWarmUp.Result result = DrawMeWarmUp.warmUp(context, new DrawMeWarmUp.Config.Builder()
+                .styles(R.style.DrawMeTest_Rounded)
+                .build());
+        assertEquals(1, result.builtBackgrounds);
+
+        FakeShapeView view = styledView("@style/DrawMeTest.Rounded");
+        ShapeSpec spec = view.getDrawMe().getSpec();
+        // specs are interned, the widget has to resolve the very spec which has been warmed up
+        assertSame(DrawMeShape.resolveStyle(context, R.style.DrawMeTest_Rounded), spec);
+        assertTrue(BackgroundCache.contains(spec));
+
+        int hits = BackgroundCache.getHitCount();
+        int misses = BackgroundCache.getMissCount();
+        layout(view);
+        assertEquals(hits + 1, BackgroundCache.getHitCount());
+        assertEquals(misses, BackgroundCache.getMissCount());
+    }
+
+    @Test
+    public void skipsHalfHeightAndInvisibleShapes() {
+        DrawMeWarmUp.Result result = DrawMeWarmUp.warmUp(context, new DrawMeWarmUp.Config.Builder()
+                .styles(R.style.DrawMeTest_Pill, R.style.DrawMeTest_Transparent)
+                .build());
+        assertEquals(0, result.builtBackgrounds);
+
+        ShapeSpec pill = DrawMeShape.resolveStyle(context, R.style.DrawMeTest_Pill);
+        ShapeSpec transparent = DrawMeShape.resolveStyle(context, R.style.DrawMeTest_Transparent);
+        assertTrue(pill.isShapeRadiusHalfHeight());
+        assertTrue(transparent.drawsNothing());
+        assertFalse(BackgroundCache.contains(pill));
+        assertFalse(BackgroundCache.contains(transparent));
+    }
+
+    @Test
+    public void countsOnlyBuiltBackgrounds() {
+        ShapeSpec spec = new ShapeSpec.Builder()
+                .backColor(0xFF009688)
+                .radius(16)
+                .build();
+        DrawMeWarmUp.Config config = new DrawMeWarmUp.Config.Builder()
+                .styles(R.style.DrawMeTest_Rounded, R.style.DrawMeTest_Rounded, R.style.DrawMeTest_Pill)
+                .specs(spec)
+                .build();
+
+        // the style is listed twice, it's built once
+        assertEquals(2, DrawMeWarmUp.warmUp(context, config).builtBackgrounds);
+        assertTrue(BackgroundCache.contains(spec));
+        // everything is cached already
+        assertEquals(0, DrawMeWarmUp.warmUp(context, config).builtBackgrounds);
+    }
+
+    private FakeShapeView styledView(String style) {
+        return new FakeShapeView(context, Robolectric.buildAttributeSet().setStyleAttribute(style).build());
+    }
+
+    private static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
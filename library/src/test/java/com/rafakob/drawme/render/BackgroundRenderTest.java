@@ -0,0 +1,217 @@
+package com.rafakob.drawme.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.rafakob.drawme.BuildConfig;
+import com.rafakob.drawme.R;
+import com.rafakob.drawme.delegate.ThemeColorTable;
+import com.rafakob.drawme.drawable.ShapeBitmapCache;
+import com.rafakob.drawme.util.BackgroundCache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders backgrounds of widgets inflated from attributes into bitmaps and compares them with golden images.
+ * Runs on KitKat, where DrawMe draws every part of the shape itself (no RippleDrawable, no view elevation).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 19,
+        shadows = {ShadowQuietDrawable.class, ShadowQuietTextView.class,
+                ShadowRasterCanvas.class, ShadowRasterPaint.class, ShadowRasterPath.class})
+public class BackgroundRenderTest {
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 40;
+
+    @Before
+    public void setUp() {
+        BackgroundCache.clear();
+        ShapeBitmapCache.clear();
+        ThemeColorTable.clear();
+    }
+
+    @Test
+    public void fill() throws IOException {
+        GoldenImage.assertMatches("fill", render(layout(fillAttrs().build())));
+    }
+
+    @Test
+    public void pressed() throws IOException {
+        View view = layout(fillAttrs().build());
+        view.setPressed(true);
+        GoldenImage.assertMatches("fill_pressed", render(view));
+    }
+
+    @Test
+    public void disabled() throws IOException {
+        View view = layout(fillAttrs().build());
+        view.setEnabled(false);
+        GoldenImage.assertMatches("fill_disabled", render(view));
+    }
+
+    @Test
+    public void stroke() throws IOException {
+        GoldenImage.assertMatches("stroke", render(layout(Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.dm_backColor, "#FFFFFF")
+                .addAttribute(R.attr.dm_stroke, "3px")
+                .addAttribute(R.attr.dm_strokeColor, "#FF4081")
+                .addAttribute(R.attr.dm_radius, "10px")
+                .build())));
+    }
+
+    @Test
+    public void cornerRadii() throws IOException {
+        GoldenImage.assertMatches("corner_radii", render(layout(Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.dm_backColor, "#009688")
+                .addAttribute(R.attr.dm_radiusTopLeft, "16px")
+                .addAttribute(R.attr.dm_radiusBottomRight, "16px")
+                .build())));
+    }
+
+    @Test
+    public void radiusHalfHeight() throws IOException {
+        GoldenImage.assertMatches("radius_half_height", render(layout(Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.dm_backColor, "#FF9800")
+                .addAttribute(R.attr.dm_shapeRadiusHalfHeight, "true")
+                .build())));
+    }
+
+    @Test
+    public void pathShadow() throws IOException {
+        GoldenImage.assertMatches("shadow_path", render(layout(shadowAttrs().build())));
+    }
+
+    @Test
+    public void elevationShadow() throws IOException, InterruptedException {
+        View view = layout(shadowAttrs().addAttribute(R.attr.dm_shadowMode, "elevation").build());
+        // first frame draws the shadow as a path while its bitmap is rasterized in the background
+        GoldenImage.assertMatches("shadow_elevation", render(view));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ShapeBitmapCache.getSize() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("shadow bitmap hasn't been rasterized", ShapeBitmapCache.getSize() > 0);
+        ShadowLooper.runUiThreadTasks();
+        GoldenImage.assertMatches("shadow_elevation", render(view));
+    }
+
+    @Test
+    public void rasterizedMatchesVector() throws IOException, InterruptedException {
+        View view = layout(fillAttrs().addAttribute(R.attr.dm_rasterize, "true").build());
+        // first frame draws the shape as a vector while its bitmaps are rasterized in the background
+        GoldenImage.assertMatches("fill", render(view));
+
+        runBackgroundResult();
+        int hits = ShapeBitmapCache.getHitCount();
+        GoldenImage.assertMatches("fill", render(view));
+        assertEquals("second frame isn't a blit of the cached bitmap", hits + 1, ShapeBitmapCache.getHitCount());
+    }
+
+    @Test
+    public void rasterizedPressedIsPrepared() throws IOException, InterruptedException {
+        View view = layout(fillAttrs().addAttribute(R.attr.dm_rasterize, "true").build());
+        render(view);
+        runBackgroundResult();
+        int hits = ShapeBitmapCache.getHitCount();
+        int misses = ShapeBitmapCache.getMissCount();
+        view.setPressed(true);
+        GoldenImage.assertMatches("fill_pressed", render(view));
+        assertEquals(hits + 1, ShapeBitmapCache.getHitCount());
+        assertEquals(misses, ShapeBitmapCache.getMissCount());
+    }
+
+    @Test
+    public void textPressed() throws IOException {
+        FakeTextView view = new FakeTextView(RuntimeEnvironment.application, Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.dm_backColor, "#E91E63")
+                .addAttribute(R.attr.dm_radius, "4px")
+                .addAttribute(R.attr.dm_stroke, "2px")
+                .addAttribute(R.attr.dm_strokeColor, "#880E4F")
+                .addAttribute(R.attr.dm_textColor, "#FFFFFF")
+                .build());
+        layout(view);
+        view.setPressed(true);
+        GoldenImage.assertMatches("text_pressed", render(view));
+    }
+
+    @Test
+    public void rebindRecolorsInPlace() throws IOException {
+        FakeShapeView view = layout(fillAttrs().build());
+        Drawable background = view.getBackground();
+        view.getDrawMe().rebind(view.getDrawMe().getSpec().buildUpon().backColor(0xFF4CAF50).build());
+        assertSame(background, view.getBackground());
+        GoldenImage.assertMatches("rebind", render(view));
+    }
+
+    /**
+     * Waits until a background task posts its result to the main thread and runs it.
+     */
+    private static void runBackgroundResult() throws InterruptedException {
+        Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.size() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("background task hasn't finished", scheduler.size() > 0);
+        ShadowLooper.runUiThreadTasks();
+    }
+
+    private static Robolectric.AttributeSetBuilder fillAttrs() {
+        return Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.dm_backColor, "#3F51B5")
+                .addAttribute(R.attr.dm_radius, "8px");
+    }
+
+    private static Robolectric.AttributeSetBuilder shadowAttrs() {
+        return Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.dm_backColor, "#FFFFFF")
+                .addAttribute(R.attr.dm_radius, "6px")
+                .addAttribute(R.attr.dm_shadowX, "3px")
+                .addAttribute(R.attr.dm_shadowY, "3px")
+                .addAttribute(R.attr.dm_shadowColor, "#66000000");
+    }
+
+    private static FakeShapeView layout(AttributeSet attrs) {
+        return layout(new FakeShapeView(RuntimeEnvironment.application, attrs));
+    }
+
+    private static <T extends View> T layout(T view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+        return view;
+    }
+
+    private static Bitmap render(View view) {
+        Bitmap bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
+        drawBackground(view, new Canvas(bitmap));
+        return bitmap;
+    }
+
+    /**
+     * Draws background like View.drawBackground(), Robolectric's View.draw() doesn't size it.
+     */
+    static void drawBackground(View view, Canvas canvas) {
+        Drawable background = view.getBackground();
+        background.setBounds(0, 0, view.getWidth(), view.getHeight());
+        background.draw(canvas);
+    }
+}
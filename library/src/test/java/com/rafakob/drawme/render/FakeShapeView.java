@@ -0,0 +1,35 @@
+package com.rafakob.drawme.render;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.rafakob.drawme.delegate.DrawMeShape;
+
+/**
+ * Bare view wired to {@link DrawMeShape} the same way DrawMe layouts are, without any children or content.
+ */
+public class FakeShapeView extends View {
+    private final DrawMeShape drawMe;
+
+    public FakeShapeView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        drawMe = new DrawMeShape(context, this, attrs);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int[] size = drawMe.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        super.onMeasure(size[0], size[1]);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        drawMe.onLayout(changed, left, top, right, bottom);
+    }
+
+    public DrawMeShape getDrawMe() {
+        return drawMe;
+    }
+}
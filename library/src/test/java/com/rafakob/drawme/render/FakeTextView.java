@@ -0,0 +1,59 @@
+package com.rafakob.drawme.render;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.widget.TextView;
+
+import com.rafakob.drawme.delegate.DrawMeShapeText;
+
+/**
+ * Plain TextView wired to {@link DrawMeShapeText} like DrawMeTextView, without the AppCompat base class.
+ */
+public class FakeTextView extends TextView {
+    private final DrawMeShapeText drawMe;
+
+    public FakeTextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        drawMe = new DrawMeShapeText(context, this, attrs);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int[] size = drawMe.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        super.onMeasure(size[0], size[1]);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        drawMe.onLayout(changed, left, top, right, bottom);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        drawMe.onAttachedToWindow();
+    }
+
+    @Override
+    public void setTypeface(Typeface tf) {
+        super.setTypeface(tf);
+        if (drawMe != null) {
+            drawMe.onTypefaceSet();
+        }
+    }
+
+    @Override
+    public void setCompoundDrawables(Drawable left, Drawable top, Drawable right, Drawable bottom) {
+        super.setCompoundDrawables(left, top, right, bottom);
+        if (drawMe != null) {
+            drawMe.onCompoundDrawablesSet();
+        }
+    }
+
+    public DrawMeShapeText getDrawMe() {
+        return drawMe;
+    }
+}
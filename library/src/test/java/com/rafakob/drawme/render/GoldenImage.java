@@ -0,0 +1,88 @@
+package com.rafakob.drawme.render;
+
+import android.graphics.Bitmap;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Compares rendered bitmaps with PNGs in src/test/resources/golden. A missing golden is written and the test
+ * fails, so new images get reviewed before they are committed. Run with -Ddrawme.updateGoldens=true
+ * to rewrite all goldens after an intended visual change. Mismatches are saved to build/reports/golden.
+ */
+final class GoldenImage {
+    private static final File GOLDEN_DIR = new File("src/test/resources/golden");
+    private static final File REPORT_DIR = new File("build/reports/golden");
+    /* Max difference of a single channel, absorbs rounding differences of the rasterizer */
+    private static final int TOLERANCE = 2;
+
+    private GoldenImage() {
+    }
+
+    static void assertMatches(String name, Bitmap bitmap) throws IOException {
+        BufferedImage actual = toImage(bitmap);
+        File golden = new File(GOLDEN_DIR, name + ".png");
+        boolean update = Boolean.getBoolean("drawme.updateGoldens");
+        if (update || !golden.exists()) {
+            write(actual, golden);
+            if (!update) {
+                fail("Golden image " + golden + " didn't exist and has been written, check it and run again");
+            }
+            return;
+        }
+
+        BufferedImage expected = ImageIO.read(golden);
+        String mismatch = compare(expected, actual);
+        if (mismatch != null) {
+            File report = new File(REPORT_DIR, name + ".png");
+            write(actual, report);
+            fail(name + ": " + mismatch + ", rendered image saved to " + report);
+        }
+    }
+
+    /**
+     * @return Description of the first difference, null if images match.
+     */
+    private static String compare(BufferedImage expected, BufferedImage actual) {
+        if (expected.getWidth() != actual.getWidth() || expected.getHeight() != actual.getHeight()) {
+            return "size " + actual.getWidth() + "x" + actual.getHeight()
+                    + ", expected " + expected.getWidth() + "x" + expected.getHeight();
+        }
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                for (int shift = 0; shift <= 24; shift += 8) {
+                    if (Math.abs(((e >>> shift) & 0xFF) - ((a >>> shift) & 0xFF)) > TOLERANCE) {
+                        return "pixel (" + x + ", " + y + ") is " + Integer.toHexString(a)
+                                + ", expected " + Integer.toHexString(e);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static BufferedImage toImage(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    private static void write(BufferedImage image, File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+        ImageIO.write(image, "png", file);
+    }
+}
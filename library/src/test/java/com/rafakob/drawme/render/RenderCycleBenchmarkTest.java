@@ -0,0 +1,133 @@
+package com.rafakob.drawme.render;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.rafakob.drawme.BuildConfig;
+import com.rafakob.drawme.R;
+import com.rafakob.drawme.delegate.DrawMeShape;
+import com.rafakob.drawme.delegate.ThemeColorTable;
+import com.rafakob.drawme.drawable.ShapeBitmapCache;
+import com.rafakob.drawme.util.BackgroundCache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Times inflate, layout, state change and draw of thousands of synthetic widgets with a mix of shapes,
+ * like a long list would create them. The first round starts with empty caches, the second one shows
+ * steady state. Draws go to a canvas without a bitmap, so only DrawMe and framework code is timed,
+ * not the test rasterizer. Number of widgets can be set with -Ddrawme.cycleWidgets.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 19,
+        shadows = {ShadowQuietDrawable.class, ShadowQuietTextView.class,
+                ShadowRasterCanvas.class, ShadowRasterPaint.class, ShadowRasterPath.class})
+public class RenderCycleBenchmarkTest {
+    private static final int WIDGETS = Integer.getInteger("drawme.cycleWidgets", 2000);
+    private static final int ROUNDS = 2;
+
+    @Test
+    public void inflateLayoutStateDraw() {
+        BackgroundCache.clear();
+        ShapeBitmapCache.clear();
+        ThemeColorTable.clear();
+        Context context = RuntimeEnvironment.application;
+        AttributeSet[] variants = variants();
+        Canvas canvas = new Canvas();
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long rebuilds = DrawMeShape.getPerformedRebuildCount();
+            View[] views = new View[WIDGETS];
+
+            long start = System.nanoTime();
+            for (int i = 0; i < WIDGETS; i++) {
+                AttributeSet attrs = variants[i % variants.length];
+                views[i] = i % 2 == 0 ? new FakeShapeView(context, attrs) : new FakeTextView(context, attrs);
+            }
+
+            long inflated = System.nanoTime();
+            for (int i = 0; i < WIDGETS; i++) {
+                int width = 96 + (i % 5) * 8;
+                views[i].measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(40, View.MeasureSpec.EXACTLY));
+                views[i].layout(0, 0, width, 40);
+            }
+
+            long laidOut = System.nanoTime();
+            for (int i = 0; i < WIDGETS; i++) {
+                views[i].setPressed(true);
+            }
+
+            long stateChanged = System.nanoTime();
+            for (int i = 0; i < WIDGETS; i++) {
+                BackgroundRenderTest.drawBackground(views[i], canvas);
+            }
+
+            long drawn = System.nanoTime();
+            for (View view : views) {
+                assertNotNull(view.getBackground());
+            }
+            assertEquals(WIDGETS, DrawMeShape.getPerformedRebuildCount() - rebuilds);
+
+            System.out.println(String.format(Locale.US,
+                    "RenderCycle round %d, %d widgets: inflate %s, layout %s, state %s, draw %s, total %s;"
+                            + " background cache %d hits / %d misses",
+                    round, WIDGETS, phase(start, inflated), phase(inflated, laidOut), phase(laidOut, stateChanged),
+                    phase(stateChanged, drawn), phase(start, drawn),
+                    BackgroundCache.getHitCount(), BackgroundCache.getMissCount()));
+        }
+    }
+
+    private static String phase(long from, long to) {
+        long nanos = to - from;
+        return String.format(Locale.US, "%d ms (%.1f us/widget)", nanos / 1000000, nanos / 1000.0 / WIDGETS);
+    }
+
+    private static AttributeSet[] variants() {
+        return new AttributeSet[]{
+                Robolectric.buildAttributeSet()
+                        .addAttribute(R.attr.dm_backColor, "#3F51B5")
+                        .addAttribute(R.attr.dm_radius, "8px")
+                        .build(),
+                Robolectric.buildAttributeSet()
+                        .addAttribute(R.attr.dm_backColor, "#FFFFFF")
+                        .addAttribute(R.attr.dm_stroke, "3px")
+                        .addAttribute(R.attr.dm_strokeColor, "#FF4081")
+                        .addAttribute(R.attr.dm_radius, "10px")
+                        .build(),
+                Robolectric.buildAttributeSet()
+                        .addAttribute(R.attr.dm_backColor, "#009688")
+                        .addAttribute(R.attr.dm_radiusTopLeft, "16px")
+                        .addAttribute(R.attr.dm_radiusBottomRight, "16px")
+                        .build(),
+                Robolectric.buildAttributeSet()
+                        .addAttribute(R.attr.dm_backColor, "#FF9800")
+                        .addAttribute(R.attr.dm_shapeRadiusHalfHeight, "true")
+                        .build(),
+                Robolectric.buildAttributeSet()
+                        .addAttribute(R.attr.dm_backColor, "#FFFFFF")
+                        .addAttribute(R.attr.dm_radius, "6px")
+                        .addAttribute(R.attr.dm_shadowX, "3px")
+                        .addAttribute(R.attr.dm_shadowY, "3px")
+                        .addAttribute(R.attr.dm_shadowMode, "elevation")
+                        .build(),
+                Robolectric.buildAttributeSet()
+                        .addAttribute(R.attr.dm_backColor, "#E91E63")
+                        .addAttribute(R.attr.dm_radius, "4px")
+                        .addAttribute(R.attr.dm_rasterize, "true")
+                        .build(),
+        };
+    }
+}
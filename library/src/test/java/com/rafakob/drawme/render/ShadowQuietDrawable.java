@@ -0,0 +1,28 @@
+package com.rafakob.drawme.render;
+
+import android.graphics.drawable.Drawable;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.shadows.ShadowDrawable;
+
+/**
+ * Drawable shadow which invalidates like the real Drawable does. {@link ShadowDrawable} records the call and
+ * invokes the real method through a reflection proxy, which allocates on every invalidation and hides
+ * allocations of the code under test.
+ */
+@Implements(Drawable.class)
+public class ShadowQuietDrawable extends ShadowDrawable {
+    @RealObject
+    private Drawable drawable;
+
+    @Implementation
+    @Override
+    public void invalidateSelf() {
+        Drawable.Callback callback = drawable.getCallback();
+        if (callback != null) {
+            callback.invalidateDrawable(drawable);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.rafakob.drawme.render;
+
+import android.widget.TextView;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowTextView;
+import org.robolectric.shadows.ShadowView;
+
+/**
+ * TextView shadow which invalidates the whole view without allocating. {@link ShadowView} records the call and
+ * invokes the real method through a reflection proxy, which allocates on every invalidation and hides
+ * allocations of the code under test.
+ */
+@Implements(TextView.class)
+public class ShadowQuietTextView extends ShadowTextView {
+    @Implementation
+    @Override
+    public void invalidate() {
+        realView.invalidate(0, 0, realView.getWidth(), realView.getHeight());
+    }
+}
@@ -0,0 +1,291 @@
+package com.rafakob.drawme.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowCanvas;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Canvas shadow with a small software rasterizer, enough to render DrawMe backgrounds into a bitmap:
+ * rectangles and round rectangles (filled or stroked, 4x4 supersampled when the paint is anti-aliased),
+ * bitmaps and colors, composited source-over with translation. Clipping, scaling, shaders and color filters
+ * are ignored. A canvas without a bitmap draws nothing, so timing runs don't pay for rasterization.
+ */
+@Implements(Canvas.class)
+public class ShadowRasterCanvas extends ShadowCanvas {
+    private static final int SAMPLES = 4;
+
+    private Bitmap target;
+    private float dx;
+    private float dy;
+    private final List<float[]> saved = new ArrayList<>();
+
+    @Implementation
+    @Override
+    public void __constructor__(Bitmap bitmap) {
+        super.__constructor__(bitmap);
+        target = bitmap;
+    }
+
+    @Implementation
+    @Override
+    public void setBitmap(Bitmap bitmap) {
+        super.setBitmap(bitmap);
+        target = bitmap;
+    }
+
+    @Implementation
+    @Override
+    public void translate(float x, float y) {
+        super.translate(x, y);
+        dx += x;
+        dy += y;
+    }
+
+    @Implementation
+    public int save() {
+        int count = getSaveCount();
+        saved.add(new float[]{dx, dy});
+        return count;
+    }
+
+    @Implementation
+    public int save(int saveFlags) {
+        return save();
+    }
+
+    @Implementation
+    public void restore() {
+        if (saved.isEmpty()) {
+            throw new IllegalStateException("Underflow in restore");
+        }
+        float[] translation = saved.remove(saved.size() - 1);
+        dx = translation[0];
+        dy = translation[1];
+    }
+
+    @Implementation
+    public void restoreToCount(int saveCount) {
+        while (getSaveCount() > saveCount && !saved.isEmpty()) {
+            restore();
+        }
+    }
+
+    @Implementation
+    public int getSaveCount() {
+        return saved.size() + 1;
+    }
+
+    @Implementation
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        if (target != null) {
+            fill(((ShadowRasterPath) Shadow.extract(path)).getRoundRects(), paint);
+        }
+    }
+
+    @Implementation
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        if (target != null) {
+            fill(Collections.singletonList(new ShadowRasterPath.RoundRect(left, top, right, bottom, new float[8])), paint);
+        }
+    }
+
+    @Implementation
+    @Override
+    public void drawColor(int color) {
+        if (target != null) {
+            int width = target.getWidth();
+            int height = target.getHeight();
+            int[] pixels = getPixels();
+            for (int i = 0; i < width * height; i++) {
+                pixels[i] = blend(pixels[i], color, 255);
+            }
+            setPixels(pixels);
+        }
+    }
+
+    @Implementation
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        if (target == null) {
+            return;
+        }
+        int width = target.getWidth();
+        int height = target.getHeight();
+        int srcWidth = bitmap.getWidth();
+        int srcHeight = bitmap.getHeight();
+        int[] src = new int[srcWidth * srcHeight];
+        bitmap.getPixels(src, 0, srcWidth, 0, 0, srcWidth, srcHeight);
+        int[] pixels = getPixels();
+        int alpha = paint == null ? 255 : paint.getAlpha();
+        int offsetX = Math.round(left + dx);
+        int offsetY = Math.round(top + dy);
+        for (int y = 0; y < srcHeight; y++) {
+            int ty = y + offsetY;
+            if (ty < 0 || ty >= height) {
+                continue;
+            }
+            for (int x = 0; x < srcWidth; x++) {
+                int tx = x + offsetX;
+                if (tx >= 0 && tx < width) {
+                    pixels[ty * width + tx] = blend(pixels[ty * width + tx], src[y * srcWidth + x], alpha);
+                }
+            }
+        }
+        setPixels(pixels);
+    }
+
+    private void fill(List<ShadowRasterPath.RoundRect> shapes, Paint paint) {
+        if (shapes.isEmpty()) {
+            return;
+        }
+        Paint.Style style = paint.getStyle();
+        float half = style == Paint.Style.FILL ? 0 : Math.max(paint.getStrokeWidth(), 1) / 2;
+        float outset = half;
+        float inset = style == Paint.Style.STROKE ? -half : Float.NaN;
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (ShadowRasterPath.RoundRect shape : shapes) {
+            minX = Math.min(minX, shape.left - outset);
+            minY = Math.min(minY, shape.top - outset);
+            maxX = Math.max(maxX, shape.right + outset);
+            maxY = Math.max(maxY, shape.bottom + outset);
+        }
+
+        int width = target.getWidth();
+        int height = target.getHeight();
+        int fromX = Math.max(0, (int) Math.floor(minX + dx));
+        int fromY = Math.max(0, (int) Math.floor(minY + dy));
+        int toX = Math.min(width, (int) Math.ceil(maxX + dx));
+        int toY = Math.min(height, (int) Math.ceil(maxY + dy));
+        if (fromX >= toX || fromY >= toY) {
+            return;
+        }
+
+        int samples = paint.isAntiAlias() ? SAMPLES : 1;
+        int color = paint.getColor();
+        int[] pixels = getPixels();
+        for (int y = fromY; y < toY; y++) {
+            for (int x = fromX; x < toX; x++) {
+                int covered = 0;
+                for (int sy = 0; sy < samples; sy++) {
+                    float py = y + (sy + 0.5f) / samples - dy;
+                    for (int sx = 0; sx < samples; sx++) {
+                        float px = x + (sx + 0.5f) / samples - dx;
+                        if (covers(shapes, px, py, outset, inset)) {
+                            covered++;
+                        }
+                    }
+                }
+                if (covered > 0) {
+                    int index = y * width + x;
+                    pixels[index] = blend(pixels[index], color, 255 * covered / (samples * samples));
+                }
+            }
+        }
+        setPixels(pixels);
+    }
+
+    /**
+     * @param inset Offset of the inner edge of a stroke, NaN for filled shapes.
+     */
+    private static boolean covers(List<ShadowRasterPath.RoundRect> shapes, float x, float y, float outset, float inset) {
+        for (ShadowRasterPath.RoundRect shape : shapes) {
+            if (contains(shape, outset, x, y) && (Float.isNaN(inset) || !contains(shape, inset, x, y))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests a point against a round rect grown by a given offset. Radii grow with it, square corners stay square,
+     * and radii which don't fit the sides are scaled down together like the platform does.
+     */
+    private static boolean contains(ShadowRasterPath.RoundRect shape, float offset, float x, float y) {
+        float left = shape.left - offset;
+        float top = shape.top - offset;
+        float right = shape.right + offset;
+        float bottom = shape.bottom + offset;
+        if (x < left || x >= right || y < top || y >= bottom) {
+            return false;
+        }
+
+        float[] r = new float[8];
+        for (int i = 0; i < 8; i++) {
+            r[i] = shape.radii[i] > 0 ? Math.max(0, shape.radii[i] + offset) : 0;
+        }
+        float width = right - left;
+        float height = bottom - top;
+        float scale = Math.min(1, Math.min(Math.min(fit(width, r[0] + r[2]), fit(width, r[6] + r[4])),
+                Math.min(fit(height, r[1] + r[7]), fit(height, r[3] + r[5]))));
+
+        // corner ellipses: top-left, top-right, bottom-right, bottom-left
+        return inCorner(x, y, left + r[0] * scale, top + r[1] * scale, r[0] * scale, r[1] * scale, x < left + r[0] * scale && y < top + r[1] * scale)
+                && inCorner(x, y, right - r[2] * scale, top + r[3] * scale, r[2] * scale, r[3] * scale, x > right - r[2] * scale && y < top + r[3] * scale)
+                && inCorner(x, y, right - r[4] * scale, bottom - r[5] * scale, r[4] * scale, r[5] * scale, x > right - r[4] * scale && y > bottom - r[5] * scale)
+                && inCorner(x, y, left + r[6] * scale, bottom - r[7] * scale, r[6] * scale, r[7] * scale, x < left + r[6] * scale && y > bottom - r[7] * scale);
+    }
+
+    private static float fit(float side, float radii) {
+        return radii > side ? side / radii : 1;
+    }
+
+    private static boolean inCorner(float x, float y, float cx, float cy, float rx, float ry, boolean inCornerBox) {
+        if (!inCornerBox || rx <= 0 || ry <= 0) {
+            return true;
+        }
+        float nx = (x - cx) / rx;
+        float ny = (y - cy) / ry;
+        return nx * nx + ny * ny <= 1;
+    }
+
+    /**
+     * Source-over of unpremultiplied colors.
+     *
+     * @param coverage Extra alpha of the source, 0..255.
+     */
+    private static int blend(int dst, int src, int coverage) {
+        float sa = (src >>> 24) * coverage / (255f * 255f);
+        if (sa <= 0) {
+            return dst;
+        }
+        float da = (dst >>> 24) / 255f;
+        float oa = sa + da * (1 - sa);
+        int r = channel(src >> 16, dst >> 16, sa, da, oa);
+        int g = channel(src >> 8, dst >> 8, sa, da, oa);
+        int b = channel(src, dst, sa, da, oa);
+        return (Math.round(oa * 255) << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int channel(int src, int dst, float sa, float da, float oa) {
+        float value = ((src & 0xFF) * sa + (dst & 0xFF) * da * (1 - sa)) / oa;
+        return Math.min(255, Math.round(value));
+    }
+
+    private int[] getPixels() {
+        int width = target.getWidth();
+        int height = target.getHeight();
+        int[] pixels = new int[width * height];
+        target.getPixels(pixels, 0, width, 0, 0, width, height);
+        return pixels;
+    }
+
+    private void setPixels(int[] pixels) {
+        target.setPixels(pixels, 0, target.getWidth(), 0, 0, target.getWidth(), target.getHeight());
+    }
+}
@@ -0,0 +1,58 @@
+package com.rafakob.drawme.render;
+
+import android.graphics.Paint;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowPaint;
+
+/**
+ * Paint shadow with the color semantics of the real Paint: alpha is the top byte of the color,
+ * so setAlpha() after setColor() changes the color which gets drawn. {@link ShadowPaint} keeps them apart.
+ */
+@Implements(Paint.class)
+public class ShadowRasterPaint extends ShadowPaint {
+    /* Native paints start opaque black */
+    private int argb = 0xFF000000;
+
+    @Implementation
+    @Override
+    public void __constructor__(Paint otherPaint) {
+        super.__constructor__(otherPaint);
+        argb = ((ShadowRasterPaint) Shadow.extract(otherPaint)).argb;
+    }
+
+    @Implementation
+    @Override
+    public void setColor(int color) {
+        super.setColor(color);
+        argb = color;
+    }
+
+    @Implementation
+    @Override
+    public int getColor() {
+        return argb;
+    }
+
+    @Implementation
+    @Override
+    public void setAlpha(int alpha) {
+        super.setAlpha(alpha);
+        argb = (argb & 0x00FFFFFF) | ((alpha & 0xFF) << 24);
+    }
+
+    @Implementation
+    @Override
+    public int getAlpha() {
+        return argb >>> 24;
+    }
+
+    @Implementation
+    @Override
+    public Paint.Style getStyle() {
+        Paint.Style style = super.getStyle();
+        return style == null ? Paint.Style.FILL : style;
+    }
+}
@@ -0,0 +1,93 @@
+package com.rafakob.drawme.render;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowPath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Path shadow which keeps rectangles and round rectangles, the only shapes DrawMe drawables are made of,
+ * so {@link ShadowRasterCanvas} can rasterize them. Lines and curves are left to {@link ShadowPath}.
+ */
+@Implements(Path.class)
+public class ShadowRasterPath extends ShadowPath {
+    private final List<RoundRect> roundRects = new ArrayList<>();
+
+    @Implementation
+    public void __constructor__(Path path) {
+        super.__constructor__(path);
+        roundRects.addAll(((ShadowRasterPath) Shadow.extract(path)).roundRects);
+    }
+
+    @Implementation
+    public void addRoundRect(RectF rect, float[] radii, Path.Direction dir) {
+        roundRects.add(new RoundRect(rect.left, rect.top, rect.right, rect.bottom, radii.clone()));
+    }
+
+    @Implementation
+    public void addRoundRect(RectF rect, float rx, float ry, Path.Direction dir) {
+        addRoundRect(rect.left, rect.top, rect.right, rect.bottom, rx, ry, dir);
+    }
+
+    @Implementation
+    public void addRoundRect(float left, float top, float right, float bottom, float rx, float ry, Path.Direction dir) {
+        roundRects.add(new RoundRect(left, top, right, bottom, new float[]{rx, ry, rx, ry, rx, ry, rx, ry}));
+    }
+
+    @Implementation
+    public void addRect(RectF rect, Path.Direction dir) {
+        addRect(rect.left, rect.top, rect.right, rect.bottom, dir);
+    }
+
+    @Implementation
+    public void addRect(float left, float top, float right, float bottom, Path.Direction dir) {
+        roundRects.add(new RoundRect(left, top, right, bottom, new float[8]));
+    }
+
+    @Implementation
+    @Override
+    public void reset() {
+        super.reset();
+        roundRects.clear();
+    }
+
+    @Implementation
+    public void rewind() {
+        reset();
+    }
+
+    @Implementation
+    public boolean isEmpty() {
+        return roundRects.isEmpty() && getPoints().isEmpty();
+    }
+
+    List<RoundRect> getRoundRects() {
+        return roundRects;
+    }
+
+    /**
+     * Rectangle with corner radii in the order of {@link Path#addRoundRect(RectF, float[], Path.Direction)}:
+     * top-left, top-right, bottom-right, bottom-left, each as (x, y).
+     */
+    static final class RoundRect {
+        final float left;
+        final float top;
+        final float right;
+        final float bottom;
+        final float[] radii;
+
+        RoundRect(float left, float top, float right, float bottom, float[] radii) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.radii = radii;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.rafakob.drawme.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the division-free color math against the original division formulas.
+ * Every output channel of mix() is a sum of a mask term and an underlying color term, both terms are compared
+ * separately over their full input range, which covers all pairs of colors.
+ */
+public class ColoringTest {
+    private static final int SEED = 0xD4A3;
+
+    @Test
+    public void mixMaskTermIsExact() {
+        for (int aA = 0; aA <= 255; aA++) {
+            for (int c = 0; c <= 255; c++) {
+                int A = argb(aA, c, c, c);
+                assertMix(A, 0);
+            }
+        }
+    }
+
+    @Test
+    public void mixUnderlyingTermIsExact() {
+        for (int aA = 0; aA <= 255; aA++) {
+            int A = argb(aA, 0, 0, 0);
+            for (int aB = 0; aB <= 255; aB++) {
+                for (int c = 0; c <= 255; c++) {
+                    int B = argb(aB, c, c, c);
+                    int expected = originalMix(A, B);
+                    int actual = Coloring.mix(A, B);
+                    if (expected != actual) {
+                        failMix(A, B, expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mixIsExactForRandomColors() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 1000000; i++) {
+            assertMix(random.nextInt(), random.nextInt());
+        }
+    }
+
+    @Test
+    public void mixAllMatchesMix() {
+        int[] colors = randomColors(4096);
+        int[] out = new int[colors.length];
+        for (int mask : masks()) {
+            Coloring.mixAll(mask, colors, out);
+            for (int i = 0; i < colors.length; i++) {
+                assertEquals(Coloring.mix(mask, colors[i]), out[i]);
+            }
+        }
+    }
+
+    @Test
+    public void mixAllWithOffsetsMatchesMix() {
+        int[] colors = randomColors(300);
+        int[] out = new int[300];
+        int mask = 0x6DFFFFFF;
+        Coloring.mixAll(mask, colors, 10, out, 20, 250);
+        for (int i = 0; i < 250; i++) {
+            assertEquals(Coloring.mix(mask, colors[10 + i]), out[20 + i]);
+        }
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, out[i]);
+        }
+    }
+
+    @Test
+    public void mixAllInPlaceMatchesMix() {
+        int[] colors = randomColors(1024);
+        int[] copy = colors.clone();
+        int mask = 0x1F000000;
+        Coloring.mixAll(mask, colors, colors);
+        for (int i = 0; i < colors.length; i++) {
+            assertEquals(Coloring.mix(mask, copy[i]), colors[i]);
+        }
+    }
+
+    @Test
+    public void mixAllBuffersMatchMix() {
+        int[] colors = randomColors(1024);
+        int mask = 0x1DFFFFFF;
+
+        IntBuffer heapColors = IntBuffer.wrap(colors);
+        IntBuffer heapOut = IntBuffer.allocate(colors.length);
+        Coloring.mixAll(mask, heapColors, heapOut);
+        assertEquals(colors.length, heapColors.position());
+        assertEquals(colors.length, heapOut.position());
+
+        IntBuffer directColors = directInts(colors.length);
+        directColors.put(colors).flip();
+        IntBuffer directOut = directInts(colors.length);
+        Coloring.mixAll(mask, directColors, directOut);
+        assertEquals(colors.length, directColors.position());
+        assertEquals(colors.length, directOut.position());
+
+        for (int i = 0; i < colors.length; i++) {
+            int expected = Coloring.mix(mask, colors[i]);
+            assertEquals(expected, heapOut.get(i));
+            assertEquals(expected, directOut.get(i));
+        }
+    }
+
+    @Test
+    public void brightnessIsExact() {
+        for (int rgb = 0; rgb <= 0xFFFFFF; rgb++) {
+            int color = 0xFF000000 | rgb;
+            float expected = originalBrightness(color);
+            float actual = Coloring.getColorBrightness(color);
+            if (Float.floatToIntBits(expected) != Float.floatToIntBits(actual)) {
+                fail("getColorBrightness(" + Integer.toHexString(color) + ") = " + actual + ", expected " + expected);
+            }
+        }
+    }
+
+    @Test
+    public void brightnessIgnoresAlpha() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 100000; i++) {
+            int color = random.nextInt();
+            assertEquals(originalBrightness(color), Coloring.getColorBrightness(color), 0f);
+        }
+    }
+
+    @Test
+    public void bulkBrightnessMatchesSingle() {
+        int[] colors = randomColors(4096);
+        float[] out = new float[colors.length];
+        Coloring.getColorBrightness(colors, out);
+
+        FloatBuffer bufferOut = FloatBuffer.allocate(colors.length);
+        IntBuffer bufferColors = IntBuffer.wrap(colors);
+        Coloring.getColorBrightness(bufferColors, bufferOut);
+        assertEquals(colors.length, bufferColors.position());
+
+        for (int i = 0; i < colors.length; i++) {
+            float expected = Coloring.getColorBrightness(colors[i]);
+            assertEquals(expected, out[i], 0f);
+            assertEquals(expected, bufferOut.get(i), 0f);
+        }
+    }
+
+    /**
+     * mix() as it was written with Color methods and integer divisions.
+     */
+    private static int originalMix(int A, int B) {
+        int rA = (A >> 16) & 0xFF;
+        int gA = (A >> 8) & 0xFF;
+        int bA = A & 0xFF;
+        int aA = A >>> 24;
+
+        int rB = (B >> 16) & 0xFF;
+        int gB = (B >> 8) & 0xFF;
+        int bB = B & 0xFF;
+        int aB = B >>> 24;
+
+        int rOut = (rA * aA / 255) + (rB * aB * (255 - aA) / (255 * 255));
+        int gOut = (gA * aA / 255) + (gB * aB * (255 - aA) / (255 * 255));
+        int bOut = (bA * aA / 255) + (bB * aB * (255 - aA) / (255 * 255));
+        int aOut = aA + (aB * (255 - aA) / 255);
+
+        return argb(aOut, rOut, gOut, bOut);
+    }
+
+    /**
+     * getColorBrightness() as it was written with Color methods and integer divisions.
+     */
+    private static float originalBrightness(int color) {
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+        return (b + r + r + g + g + g) / 6 / 255f;
+    }
+
+    private static void assertMix(int A, int B) {
+        int expected = originalMix(A, B);
+        int actual = Coloring.mix(A, B);
+        if (expected != actual) {
+            failMix(A, B, expected, actual);
+        }
+    }
+
+    private static void failMix(int A, int B, int expected, int actual) {
+        fail("mix(" + Integer.toHexString(A) + ", " + Integer.toHexString(B) + ") = " + Integer.toHexString(actual)
+                + ", expected " + Integer.toHexString(expected));
+    }
+
+    private static int argb(int a, int r, int g, int b) {
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int[] masks() {
+        return new int[]{0x00000000, 0xFF000000, 0xFFFFFFFF, 0x1F000000, 0x1DFFFFFF, 0x6DFFFFFF, 0x80FF4081};
+    }
+
+    private static int[] randomColors(int count) {
+        Random random = new Random(SEED);
+        int[] colors = new int[count];
+        for (int i = 0; i < count; i++) {
+            colors[i] = random.nextInt();
+        }
+        return colors;
+    }
+
+    private static IntBuffer directInts(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+}